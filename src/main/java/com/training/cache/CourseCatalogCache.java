@@ -0,0 +1,172 @@
+package com.training.cache;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.training.constants.TrainingConstants;
+import com.training.model.Course;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * In-memory copy of the course catalog. Reads are served from an immutable
+ * snapshot that is rebuilt and swapped atomically whenever a course is
+ * written. Snapshots older than the configured max age are also rebuilt so
+ * that writes made by other instances are eventually picked up.
+ */
+@Component
+public class CourseCatalogCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(CourseCatalogCache.class);
+
+	private final MongoTemplate mongoTemplate;
+
+	private final long maxAgeMillis;
+
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+	private final Timer rebuildTimer;
+
+	public CourseCatalogCache(MongoTemplate mongoTemplate, MeterRegistry meterRegistry,
+			@Value("${courses.cache.maxAgeSeconds:300}") long maxAgeSeconds) {
+		this.mongoTemplate = mongoTemplate;
+		this.maxAgeMillis = TimeUnit.SECONDS.toMillis(maxAgeSeconds);
+		this.rebuildTimer = Timer.builder("courses.catalog.rebuild").register(meterRegistry);
+		Gauge.builder("courses.catalog.snapshot.age", this, CourseCatalogCache::getSnapshotAgeSeconds)
+				.baseUnit("seconds").register(meterRegistry);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void warmUp() {
+		this.rebuild();
+	}
+
+	public Snapshot getSnapshot() {
+		Snapshot current = this.snapshot.get();
+		if (current == null || current.getAgeMillis() > this.maxAgeMillis) {
+			current = this.rebuildIfStale(current);
+		}
+		return current;
+	}
+
+	public List<Course> getActiveCourses() {
+		return this.getSnapshot().getActiveCourses();
+	}
+
+	public Course getCourse(String courseId) {
+		return this.getSnapshot().getCourse(courseId);
+	}
+
+	/**
+	 * Reloads the catalog from Mongo and swaps it in. Called after every course
+	 * write so this instance never serves a catalog older than its own writes.
+	 */
+	public synchronized Snapshot rebuild() {
+		Snapshot rebuilt = this.rebuildTimer.record(() -> new Snapshot(this.mongoTemplate.findAll(Course.class)));
+		this.snapshot.set(rebuilt);
+		logger.info("Rebuilt course catalog snapshot with {} courses", rebuilt.getCourses().size());
+		return rebuilt;
+	}
+
+	private synchronized Snapshot rebuildIfStale(Snapshot seen) {
+		// Another thread may have rebuilt while this one waited for the lock
+		Snapshot current = this.snapshot.get();
+		if (current != seen && current != null) {
+			return current;
+		}
+		return this.rebuild();
+	}
+
+	private double getSnapshotAgeSeconds() {
+		Snapshot current = this.snapshot.get();
+		return current == null ? 0 : current.getAgeMillis() / 1000.0;
+	}
+
+	public static class Snapshot {
+		private static final AtomicLong generations = new AtomicLong();
+
+		private final List<Course> courses;
+		private final List<Course> activeCourses;
+		private final Map<String, Course> coursesById;
+		private final Map<String, Integer> activeOrdinals;
+		private final BitSet activeBits;
+		private final long generation;
+		private final long builtAt;
+
+		Snapshot(List<Course> courses) {
+			List<Course> active = new ArrayList<>();
+			Map<String, Course> byId = new HashMap<>();
+			Map<String, Integer> ordinals = new HashMap<>();
+			for (Course course : courses) {
+				byId.put(course.getCourseId(), course);
+				if (TrainingConstants.ACTIVE.equals(course.getStatus())) {
+					ordinals.put(course.getCourseId(), active.size());
+					active.add(course);
+				}
+			}
+			BitSet bits = new BitSet(active.size());
+			bits.set(0, active.size());
+
+			this.courses = Collections.unmodifiableList(courses);
+			this.activeCourses = Collections.unmodifiableList(active);
+			this.coursesById = Collections.unmodifiableMap(byId);
+			this.activeOrdinals = Collections.unmodifiableMap(ordinals);
+			this.activeBits = bits;
+			this.generation = generations.incrementAndGet();
+			this.builtAt = System.currentTimeMillis();
+		}
+
+		public List<Course> getCourses() {
+			return this.courses;
+		}
+
+		public List<Course> getActiveCourses() {
+			return this.activeCourses;
+		}
+
+		public Course getCourse(String courseId) {
+			return this.coursesById.get(courseId);
+		}
+
+		/**
+		 * Position of an active course in {@link #getActiveCourses()}, or -1 if
+		 * the course is unknown or not active. Only valid for this generation.
+		 */
+		public int getOrdinal(String courseId) {
+			Integer ordinal = this.activeOrdinals.get(courseId);
+			return ordinal == null ? -1 : ordinal;
+		}
+
+		/**
+		 * A copy of the bitset with one bit set per active course ordinal.
+		 */
+		public BitSet getActiveBits() {
+			return (BitSet) this.activeBits.clone();
+		}
+
+		public long getGeneration() {
+			return this.generation;
+		}
+
+		public long getAgeMillis() {
+			return System.currentTimeMillis() - this.builtAt;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.training.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Remembers recently verified Basic-auth credentials for a short time so that
+ * repeat callers skip the user lookup and password check. Only a salted HMAC
+ * of the presented password is held; the salt is random per process.
+ */
+@Component
+public class CredentialCache {
+
+	private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+	private final Cache<String, byte[]> cache;
+
+	private final SecretKeySpec saltKey;
+
+	private final ThreadLocal<Mac> macs;
+
+	private final Counter hits;
+
+	private final Counter misses;
+
+	private final Counter invalidations;
+
+	public CredentialCache(@Value("${auth.credentialCache.ttlSeconds:60}") long ttlSeconds,
+			@Value("${auth.credentialCache.maxSize:10000}") long maxSize, MeterRegistry meterRegistry) {
+		this.cache = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+				.recordStats().build();
+
+		byte[] salt = new byte[32];
+		new SecureRandom().nextBytes(salt);
+		this.saltKey = new SecretKeySpec(salt, HMAC_ALGORITHM);
+		this.macs = ThreadLocal.withInitial(this::newMac);
+
+		this.hits = Counter.builder("auth.credential.cache.requests").tag("result", "hit").register(meterRegistry);
+		this.misses = Counter.builder("auth.credential.cache.requests").tag("result", "miss").register(meterRegistry);
+		this.invalidations = Counter.builder("auth.credential.cache.invalidations").register(meterRegistry);
+		Gauge.builder("auth.credential.cache.hit.ratio", this, CredentialCache::hitRatio).register(meterRegistry);
+		CaffeineCacheMetrics.monitor(meterRegistry, this.cache, "auth.credential.cache");
+	}
+
+	/**
+	 * Returns true only if the same username/password pair was verified
+	 * against the database within the TTL.
+	 */
+	public boolean isVerified(String username, String password) {
+		byte[] cached = this.cache.getIfPresent(username);
+		if (cached != null && MessageDigest.isEqual(cached, digest(username, password))) {
+			this.hits.increment();
+			return true;
+		}
+		this.misses.increment();
+		return false;
+	}
+
+	public void markVerified(String username, String password) {
+		this.cache.put(username, digest(username, password));
+	}
+
+	public void invalidate(String username) {
+		if (username != null && this.cache.asMap().remove(username) != null) {
+			this.invalidations.increment();
+		}
+	}
+
+	private double hitRatio() {
+		double total = this.hits.count() + this.misses.count();
+		return total == 0 ? 0 : this.hits.count() / total;
+	}
+
+	private byte[] digest(String username, String password) {
+		Mac mac = this.macs.get();
+		mac.update(username.getBytes(StandardCharsets.UTF_8));
+		mac.update((byte) ':');
+		return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private Mac newMac() {
+		try {
+			Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+			mac.init(this.saltKey);
+			return mac;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Error initialising credential digest: " + e.getMessage(), e);
+		}
+	}
+}
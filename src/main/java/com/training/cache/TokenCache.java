@@ -0,0 +1,94 @@
+package com.training.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.training.model.ParsedToken;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Caches verified bearer tokens so that repeat requests skip signature
+ * verification. Entries are keyed by a SHA-256 digest of the raw token and
+ * expire at the token's own expiry time.
+ */
+@Component
+public class TokenCache {
+
+	private final Cache<String, Entry> cache;
+
+	public TokenCache(@Value("${auth.tokenCache.maxSize:10000}") long maxSize, MeterRegistry meterRegistry) {
+		this.cache = Caffeine.newBuilder().maximumSize(maxSize).expireAfter(new TokenExpiry()).recordStats().build();
+		CaffeineCacheMetrics.monitor(meterRegistry, this.cache, "jwt.token.cache");
+	}
+
+	public Authentication get(String token) {
+		Entry entry = this.cache.getIfPresent(digest(token));
+		return entry != null ? entry.getAuthentication() : null;
+	}
+
+	public void put(ParsedToken parsedToken, Authentication authentication) {
+		if (parsedToken.getExpiration() == null) {
+			return;
+		}
+		this.cache.put(digest(parsedToken.getToken()), new Entry(parsedToken, authentication));
+	}
+
+	private static String digest(String token) {
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = messageDigest.digest(token.getBytes(StandardCharsets.UTF_8));
+			return Base64.getEncoder().encodeToString(hash);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	public static class Entry {
+		private final ParsedToken parsedToken;
+		private final Authentication authentication;
+
+		Entry(ParsedToken parsedToken, Authentication authentication) {
+			this.parsedToken = parsedToken;
+			this.authentication = authentication;
+		}
+
+		public ParsedToken getParsedToken() {
+			return this.parsedToken;
+		}
+
+		public Authentication getAuthentication() {
+			return this.authentication;
+		}
+	}
+
+	private static class TokenExpiry implements Expiry<String, Entry> {
+
+		@Override
+		public long expireAfterCreate(String key, Entry entry, long currentTime) {
+			long remainingMillis = entry.getParsedToken().getExpiration().getTime() - System.currentTimeMillis();
+			return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+		}
+
+		@Override
+		public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+			return expireAfterCreate(key, entry, currentTime);
+		}
+
+		@Override
+		public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
+	}
+}
@@ -0,0 +1,260 @@
+package com.training.config;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Executor behind {@code @Async} methods and the application's background
+ * jobs. The queue is bounded and overflow runs on the submitting thread, so a
+ * burst slows callers down instead of growing the heap. The caller's MDC is
+ * carried over to the worker thread.
+ * <p>
+ * Password hashing for bulk imports gets its own pool sized to the CPU count,
+ * so a large import cannot crowd out settlement and other background work.
+ * Email campaigns likewise run on a small pool of their own: a fan-out over a
+ * whole cohort holds its thread for minutes, and a full pool rejects the run
+ * rather than executing it on the request or scheduler thread; the resume
+ * sweep picks rejected campaigns up later.
+ * <p>
+ * Declaring these executors makes Boot skip its own
+ * {@code applicationTaskExecutor}, so Spring MVC async requests (e.g.
+ * streamed responses) are given a bounded pool of their own here instead of
+ * falling back to a new thread per request.
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig implements AsyncConfigurer, WebMvcConfigurer {
+
+	public static final String TASK_EXECUTOR = "taskExecutor";
+
+	public static final String PASSWORD_HASH_EXECUTOR = "passwordHashExecutor";
+
+	public static final String MVC_ASYNC_EXECUTOR = "mvcAsyncExecutor";
+
+	public static final String CAMPAIGN_EXECUTOR = "campaignExecutor";
+
+	private static final Logger logger = LoggerFactory.getLogger(AsyncConfig.class);
+
+	@Value("${async.executor.coreSize:4}")
+	private int coreSize;
+
+	@Value("${async.executor.maxSize:16}")
+	private int maxSize;
+
+	@Value("${async.executor.queueCapacity:500}")
+	private int queueCapacity;
+
+	@Value("${async.executor.keepAliveSeconds:60}")
+	private int keepAliveSeconds;
+
+	@Value("${async.executor.awaitTerminationSeconds:30}")
+	private int awaitTerminationSeconds;
+
+	// 0 means one thread per available processor
+	@Value("${import.hashing.threads:0}")
+	private int hashingThreads;
+
+	@Value("${import.hashing.queueCapacity:1000}")
+	private int hashingQueueCapacity;
+
+	@Value("${async.mvc.coreSize:8}")
+	private int mvcCoreSize;
+
+	@Value("${async.mvc.maxSize:32}")
+	private int mvcMaxSize;
+
+	@Value("${async.mvc.queueCapacity:100}")
+	private int mvcQueueCapacity;
+
+	@Value("${campaigns.executor.threads:2}")
+	private int campaignThreads;
+
+	@Value("${campaigns.executor.queueCapacity:20}")
+	private int campaignQueueCapacity;
+
+	private ThreadPoolTaskExecutor mvcAsyncExecutor;
+
+	private final MeterRegistry meterRegistry;
+
+	private ThreadPoolTaskExecutor taskExecutor;
+
+	public AsyncConfig(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Bean(TASK_EXECUTOR)
+	public ThreadPoolTaskExecutor taskExecutor() {
+		if (this.taskExecutor != null) {
+			return this.taskExecutor;
+		}
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(this.coreSize);
+		executor.setMaxPoolSize(this.maxSize);
+		executor.setQueueCapacity(this.queueCapacity);
+		executor.setKeepAliveSeconds(this.keepAliveSeconds);
+		executor.setThreadNamePrefix("training-async-");
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.setTaskDecorator(new InstrumentedTaskDecorator(this.meterRegistry, "async.executor"));
+		executor.setWaitForTasksToCompleteOnShutdown(true);
+		executor.setAwaitTerminationSeconds(this.awaitTerminationSeconds);
+		executor.initialize();
+
+		Gauge.builder("async.executor.queue.depth", executor,
+				e -> e.getThreadPoolExecutor().getQueue().size()).register(this.meterRegistry);
+		Gauge.builder("async.executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+				.register(this.meterRegistry);
+		Gauge.builder("async.executor.pool.size", executor, ThreadPoolTaskExecutor::getPoolSize)
+				.register(this.meterRegistry);
+
+		this.taskExecutor = executor;
+		return executor;
+	}
+
+	/**
+	 * CPU-bound pool for password hashing. Overflow runs on the submitting
+	 * (request) thread, which throttles the import instead of queueing more.
+	 */
+	@Bean(PASSWORD_HASH_EXECUTOR)
+	public ThreadPoolTaskExecutor passwordHashExecutor() {
+		int threads = this.hashingThreads > 0 ? this.hashingThreads : Runtime.getRuntime().availableProcessors();
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(threads);
+		executor.setMaxPoolSize(threads);
+		executor.setQueueCapacity(this.hashingQueueCapacity);
+		executor.setThreadNamePrefix("password-hash-");
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.initialize();
+
+		Gauge.builder("import.hashing.queue.depth", executor,
+				e -> e.getThreadPoolExecutor().getQueue().size()).register(this.meterRegistry);
+		return executor;
+	}
+
+	/**
+	 * Runs email campaigns. Overflow is rejected, not run on the caller: the
+	 * campaign stays PENDING and {@code resumeCampaigns} retries it.
+	 */
+	@Bean(CAMPAIGN_EXECUTOR)
+	public ThreadPoolTaskExecutor campaignExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(this.campaignThreads);
+		executor.setMaxPoolSize(this.campaignThreads);
+		executor.setQueueCapacity(this.campaignQueueCapacity);
+		executor.setThreadNamePrefix("email-campaign-");
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+		executor.setTaskDecorator(new InstrumentedTaskDecorator(this.meterRegistry, "campaigns.executor"));
+		executor.initialize();
+
+		Gauge.builder("campaigns.executor.queue.depth", executor,
+				e -> e.getThreadPoolExecutor().getQueue().size()).register(this.meterRegistry);
+		Gauge.builder("campaigns.executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+				.register(this.meterRegistry);
+		return executor;
+	}
+
+	/**
+	 * Runs Spring MVC async work such as {@code StreamingResponseBody}. Kept
+	 * apart from the task executor because streamed responses hold a thread
+	 * for as long as the client reads.
+	 */
+	@Bean(MVC_ASYNC_EXECUTOR)
+	public ThreadPoolTaskExecutor mvcAsyncExecutor() {
+		if (this.mvcAsyncExecutor != null) {
+			return this.mvcAsyncExecutor;
+		}
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(this.mvcCoreSize);
+		executor.setMaxPoolSize(this.mvcMaxSize);
+		executor.setQueueCapacity(this.mvcQueueCapacity);
+		executor.setKeepAliveSeconds(this.keepAliveSeconds);
+		executor.setThreadNamePrefix("mvc-async-");
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.setTaskDecorator(new InstrumentedTaskDecorator(this.meterRegistry, "async.mvc"));
+		executor.initialize();
+
+		Gauge.builder("async.mvc.queue.depth", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+				.register(this.meterRegistry);
+		Gauge.builder("async.mvc.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+				.register(this.meterRegistry);
+
+		this.mvcAsyncExecutor = executor;
+		return executor;
+	}
+
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		configurer.setTaskExecutor(this.mvcAsyncExecutor());
+	}
+
+	@Override
+	public Executor getAsyncExecutor() {
+		return this.taskExecutor();
+	}
+
+	@Override
+	public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
+		return (e, method, params) -> logger.error("Async call to {} failed", method.getName(), e);
+	}
+
+	/**
+	 * Copies the submitting thread's MDC into the task and records how long the
+	 * task waited in the queue and how long it ran.
+	 */
+	static class InstrumentedTaskDecorator implements TaskDecorator {
+
+		private final Timer queueWait;
+
+		private final Timer execution;
+
+		InstrumentedTaskDecorator(MeterRegistry meterRegistry, String prefix) {
+			this.queueWait = Timer.builder(prefix + ".queue.wait").register(meterRegistry);
+			this.execution = Timer.builder(prefix + ".task.duration").register(meterRegistry);
+		}
+
+		@Override
+		public Runnable decorate(Runnable runnable) {
+			Map<String, String> context = MDC.getCopyOfContextMap();
+			long submittedAt = System.nanoTime();
+			return () -> {
+				long startedAt = System.nanoTime();
+				this.queueWait.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+				Map<String, String> previous = MDC.getCopyOfContextMap();
+				if (context != null) {
+					MDC.setContextMap(context);
+				} else {
+					MDC.clear();
+				}
+				try {
+					runnable.run();
+				} finally {
+					this.execution.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+					if (previous != null) {
+						MDC.setContextMap(previous);
+					} else {
+						MDC.clear();
+					}
+				}
+			};
+		}
+	}
+}
@@ -6,21 +6,20 @@ import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import com.training.constants.CollectionConstants;
-import com.training.model.KeyStorage;
+import com.training.cache.CredentialCache;
+import com.training.cache.TokenCache;
+import com.training.model.ParsedToken;
 import com.training.model.User;
-import com.training.utils.EncryptionUtils;
+import com.training.service.CredentialService;
 import com.training.utils.JwtUtils;
 
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
-import org.springframework.util.Base64Utils;
 
-import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -34,15 +33,21 @@ public class JwtConfig extends OncePerRequestFilter {
 
 	private final JwtUtils jwtUtils;
 
-	public JwtConfig(JwtUtils jwtUtils) {
+	private final TokenCache tokenCache;
+
+	public JwtConfig(JwtUtils jwtUtils, TokenCache tokenCache) {
 		this.jwtUtils = jwtUtils;
+		this.tokenCache = tokenCache;
 	}
 
 	@Autowired
 	private MongoTemplate mongoTemplate;
 
 	@Autowired
-	private EncryptionUtils encryptionUtils;
+	private CredentialService credentialService;
+
+	@Autowired
+	private CredentialCache credentialCache;
 
 	@Override
 	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -53,12 +58,15 @@ public class JwtConfig extends OncePerRequestFilter {
 			if (requestTokenHeader.startsWith("Bearer ")) {
 				// Handle Bearer token authentication
 				String jwtToken = requestTokenHeader.substring(7);
-				String username = jwtUtils.extractUsername(jwtToken);
 
-				if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-					if (jwtUtils.validateToken(jwtToken, username)) {
-						SecurityContextHolder.getContext()
-								.setAuthentication(jwtUtils.getAuthenticationFromToken(jwtToken));
+				if (SecurityContextHolder.getContext().getAuthentication() == null) {
+					Authentication authentication = this.tokenCache.get(jwtToken);
+					if (authentication == null) {
+						// Cache miss: verify the signature once and remember the result
+						authentication = this.authenticateToken(jwtToken);
+					}
+					if (authentication != null) {
+						SecurityContextHolder.getContext().setAuthentication(authentication);
 					}
 				}
 			} else if (requestTokenHeader.startsWith("Basic ")) {
@@ -84,32 +92,35 @@ public class JwtConfig extends OncePerRequestFilter {
 		filterChain.doFilter(request, response);
 	}
 
+	private Authentication authenticateToken(String jwtToken) {
+		ParsedToken parsedToken = jwtUtils.parseToken(jwtToken);
+		if (parsedToken.getSubject() == null || parsedToken.isExpired()) {
+			return null;
+		}
+		Authentication authentication = jwtUtils.getAuthentication(parsedToken);
+		this.tokenCache.put(parsedToken, authentication);
+		return authentication;
+	}
+
 	private boolean authenticateUser(String username, String password) {
 
 		if (StringUtils.isEmpty(username) || StringUtils.isEmpty(password)) {
 			return false;
 		}
 
+		if (this.credentialCache.isVerified(username, password)) {
+			return true;
+		}
+
+		// Only the fields needed to verify the password, in a single round-trip
 		Query query = new Query();
 		query.addCriteria(Criteria.where("email").is(username));
-		if (this.mongoTemplate.count(query, User.class) == 0) {
-			return false;
-		}
+		query.fields().include("email").include("password");
 
 		User user = this.mongoTemplate.findOne(query, User.class);
-		if (user != null) {
-			KeyStorage keyStorage = this.mongoTemplate.findOne(query, KeyStorage.class,
-					CollectionConstants.KEY_STORAGE);
-
-			String encodedKey = keyStorage.getSecretKey();
-			byte[] secretKeyBytes = Base64Utils.decodeFromString(encodedKey);
-			SecretKey secretKey = new SecretKeySpec(secretKeyBytes, "AES");
-
-			String decryptedPassword = this.encryptionUtils.decrypt(user.getPassword(), secretKey);
-
-			if (StringUtils.equalsIgnoreCase(decryptedPassword, password)) {
-				return true;
-			}
+		if (user != null && this.credentialService.verifyPassword(user, password)) {
+			this.credentialCache.markVerified(username, password);
+			return true;
 		}
 		return false;
 	}
@@ -2,10 +2,12 @@ package com.training.config;
 
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
@@ -59,6 +61,18 @@ public class MongoConfig {
 		return converter;
 	}
 
+	/**
+	 * Only registered when settlement and credit events should use
+	 * multi-document transactions, which require MongoDB to run as a replica
+	 * set.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "transactions.settlement.useTransactions", havingValue = "true")
+	public MongoTransactionManager mongoTransactionManager(
+			@Qualifier("mongoDbFactory") MongoDatabaseFactory mongoDbFactory) {
+		return new MongoTransactionManager(mongoDbFactory);
+	}
+
 	@Primary
 	@Bean(name = "mongoTemplate")
 	public MongoTemplate getMongoTemplate(@Qualifier("mongoDbFactory") MongoDatabaseFactory mongoDbFactory)
@@ -0,0 +1,153 @@
+package com.training.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Creates the indexes declared with {@code @Indexed} / {@code @CompoundIndex}
+ * on every {@code @Document} class in the model package. Runs in the
+ * background once the application is ready, then checks each collection for
+ * indexes that are still missing (e.g. a unique index rejected because of
+ * existing duplicates) and reports them through the actuator health endpoint.
+ * Callers that rely on a unique index instead of a pre-insert check can ask
+ * {@link #hasUniqueIndex(Class, String)} whether it has been confirmed.
+ */
+@Component("mongoIndexes")
+public class MongoIndexBootstrapper implements HealthIndicator {
+
+	private static final String MODEL_PACKAGE = "com.training.model";
+
+	private static final Logger logger = LoggerFactory.getLogger(MongoIndexBootstrapper.class);
+
+	private final MongoTemplate mongoTemplate;
+
+	private final Executor taskExecutor;
+
+	private volatile boolean completed;
+
+	private volatile Map<String, List<String>> missingIndexes = Collections.emptyMap();
+
+	// "collection.field" of every single-field unique index seen on the server
+	private final Set<String> uniqueIndexes = ConcurrentHashMap.newKeySet();
+
+	public MongoIndexBootstrapper(MongoTemplate mongoTemplate,
+			@Qualifier(AsyncConfig.TASK_EXECUTOR) Executor taskExecutor) {
+		this.mongoTemplate = mongoTemplate;
+		this.taskExecutor = taskExecutor;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void bootstrap() {
+		CompletableFuture.runAsync(this::ensureIndexes, this.taskExecutor).exceptionally(e -> {
+			logger.error("Index bootstrap failed", e);
+			return null;
+		});
+	}
+
+	public void ensureIndexes() {
+		IndexResolver indexResolver = IndexResolver.create(this.mongoTemplate.getConverter().getMappingContext());
+		Map<String, List<String>> missing = new LinkedHashMap<>();
+
+		for (Class<?> documentType : this.findDocumentTypes()) {
+			IndexOperations indexOperations = this.mongoTemplate.indexOps(documentType);
+			List<IndexDefinition> definitions = new ArrayList<>();
+			indexResolver.resolveIndexFor(documentType).forEach(definitions::add);
+
+			for (IndexDefinition definition : definitions) {
+				try {
+					indexOperations.ensureIndex(definition);
+				} catch (Exception e) {
+					logger.warn("Could not create index {} on {}: {}", definition.getIndexKeys().toJson(),
+							this.mongoTemplate.getCollectionName(documentType), e.getMessage());
+				}
+			}
+
+			String collectionName = this.mongoTemplate.getCollectionName(documentType);
+			List<IndexInfo> indexInfos = indexOperations.getIndexInfo();
+			for (IndexInfo indexInfo : indexInfos) {
+				if (indexInfo.isUnique() && indexInfo.getIndexFields().size() == 1) {
+					this.uniqueIndexes.add(collectionName + "." + indexInfo.getIndexFields().get(0).getKey());
+				}
+			}
+			List<List<String>> existing = indexInfos.stream().map(this::getKeys).collect(Collectors.toList());
+			for (IndexDefinition definition : definitions) {
+				List<String> keys = new ArrayList<>(definition.getIndexKeys().keySet());
+				if (!existing.contains(keys)) {
+					missing.computeIfAbsent(collectionName, k -> new ArrayList<>())
+							.add(definition.getIndexKeys().toJson());
+				}
+			}
+		}
+
+		this.missingIndexes = missing;
+		this.completed = true;
+		if (missing.isEmpty()) {
+			logger.info("All declared indexes are present");
+		} else {
+			logger.warn("Missing indexes after bootstrap: {}", missing);
+		}
+	}
+
+	/**
+	 * True once a unique index on {@code field} has been seen on the collection
+	 * of {@code documentType}. False while the bootstrap is still running or if
+	 * the index could not be built, e.g. because of legacy duplicates.
+	 */
+	public boolean hasUniqueIndex(Class<?> documentType, String field) {
+		return this.uniqueIndexes.contains(this.mongoTemplate.getCollectionName(documentType) + "." + field);
+	}
+
+	@Override
+	public Health health() {
+		if (!this.completed) {
+			return Health.unknown().withDetail("state", "running").build();
+		}
+		if (this.missingIndexes.isEmpty()) {
+			return Health.up().build();
+		}
+		return Health.status("MISSING_INDEXES").withDetail("missing", this.missingIndexes).build();
+	}
+
+	private List<String> getKeys(IndexInfo indexInfo) {
+		return indexInfo.getIndexFields().stream().map(IndexField::getKey).collect(Collectors.toList());
+	}
+
+	private List<Class<?>> findDocumentTypes() {
+		ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+		scanner.addIncludeFilter(new AnnotationTypeFilter(Document.class));
+		List<Class<?>> documentTypes = new ArrayList<>();
+		for (BeanDefinition beanDefinition : scanner.findCandidateComponents(MODEL_PACKAGE)) {
+			documentTypes.add(ClassUtils.resolveClassName(beanDefinition.getBeanClassName(),
+					ClassUtils.getDefaultClassLoader()));
+		}
+		return documentTypes;
+	}
+}
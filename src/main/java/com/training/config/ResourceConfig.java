@@ -1,15 +1,74 @@
 package com.training.config;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
 
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
 @Configuration
 public class ResourceConfig {
 
+	@Value("${http.client.maxIdleConnections:20}")
+	private int maxIdleConnections;
+
+	@Value("${http.client.keepAliveSeconds:300}")
+	private long keepAliveSeconds;
+
+	@Value("${http.client.maxRequests:64}")
+	private int maxRequests;
+
+	@Value("${http.client.maxRequestsPerHost:32}")
+	private int maxRequestsPerHost;
+
+	@Value("${http.client.connectTimeoutMs:5000}")
+	private long connectTimeoutMs;
+
+	@Value("${http.client.readTimeoutMs:15000}")
+	private long readTimeoutMs;
+
+	@Value("${http.client.writeTimeoutMs:10000}")
+	private long writeTimeoutMs;
+
+	@Value("${http.client.callTimeoutMs:30000}")
+	private long callTimeoutMs;
+
+	@Value("${http.client.http2Enabled:true}")
+	private boolean http2Enabled;
+
 	@Bean
 	public RestTemplate restTemplate(RestTemplateBuilder builder) {
 		return builder.build();
 	}
+
+	/**
+	 * Shared client for outbound gateway calls. One connection pool and one
+	 * dispatcher for the whole application; the dispatcher limits bound how
+	 * many async calls are in flight at once.
+	 */
+	@Bean
+	public OkHttpClient okHttpClient() {
+		Dispatcher dispatcher = new Dispatcher();
+		dispatcher.setMaxRequests(this.maxRequests);
+		dispatcher.setMaxRequestsPerHost(this.maxRequestsPerHost);
+
+		return new OkHttpClient.Builder()
+				.connectionPool(new ConnectionPool(this.maxIdleConnections, this.keepAliveSeconds, TimeUnit.SECONDS))
+				.dispatcher(dispatcher).connectTimeout(this.connectTimeoutMs, TimeUnit.MILLISECONDS)
+				.readTimeout(this.readTimeoutMs, TimeUnit.MILLISECONDS)
+				.writeTimeout(this.writeTimeoutMs, TimeUnit.MILLISECONDS)
+				.callTimeout(this.callTimeoutMs, TimeUnit.MILLISECONDS)
+				.protocols(this.http2Enabled ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+						: Collections.singletonList(Protocol.HTTP_1_1))
+				.build();
+	}
 }
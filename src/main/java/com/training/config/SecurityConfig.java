@@ -19,7 +19,9 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 	@Override
 	protected void configure(HttpSecurity http) throws Exception {
 		http.csrf().disable().authorizeRequests().antMatchers("/api/v1/training/signin").permitAll()
-				.antMatchers("api/v1/training/users/createuser").permitAll().anyRequest().authenticated().and()
+				.antMatchers("api/v1/training/users/createuser").permitAll()
+				// Gateway server-to-server callback; authenticated by its X-VERIFY checksum
+				.antMatchers("/api/v1/training/payments/callback").permitAll().anyRequest().authenticated().and()
 				.addFilterBefore(jwtConfig, UsernamePasswordAuthenticationFilter.class);
 	}
 
@@ -8,4 +8,9 @@ public class CollectionConstants {
 	public static final String ACTIVITY_LOG = "activity";
 	public static final String PAYMENTS = "payments";
 	public static final String CREDITS = "credits";
+	public static final String USER_SUMMARY = "user_summary";
+	public static final String EMAIL_OUTBOX = "email_outbox";
+	public static final String EMAIL_CAMPAIGNS = "email_campaigns";
+	public static final String PAYMENT_ORDERS = "payment_orders";
+	public static final String REFERRAL_CODES = "referral_codes";
 }
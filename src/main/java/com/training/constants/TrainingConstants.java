@@ -13,4 +13,15 @@ public class TrainingConstants {
 	public static final String FORGOT_PASSWORD = "FORGOT_PASSWORD";
 	public static final String USE = "USE";
 	public static final String ADD = "ADD";
+	public static final String SENDING = "SENDING";
+	public static final String SENT = "SENT";
+	public static final String FAILED = "FAILED";
+	public static final String RUNNING = "RUNNING";
+	public static final String COURSE_ENROLLEES = "COURSE_ENROLLEES";
+	public static final String UNVERIFIED_USERS = "UNVERIFIED_USERS";
+	public static final String RECEIVED = "RECEIVED";
+	public static final String PAYMENT_SUCCESS = "PAYMENT_SUCCESS";
+	public static final String PAYMENT_ERROR = "PAYMENT_ERROR";
+	public static final String PAYMENT_DECLINED = "PAYMENT_DECLINED";
+	public static final String TIMED_OUT = "TIMED_OUT";
 }
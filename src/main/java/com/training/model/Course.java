@@ -7,6 +7,7 @@ import javax.validation.constraints.NotNull;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -29,6 +30,8 @@ public class Course {
 	private int price;
 	private int memberPrice;
 	private int nonMemberPrice;
+	@Version
+	private Long version;
 
 	public String getId() {
 		return this.id;
@@ -110,4 +113,12 @@ public class Course {
 		this.nonMemberPrice = nonMemberPrice;
 	}
 
+	public Long getVersion() {
+		return this.version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
 }
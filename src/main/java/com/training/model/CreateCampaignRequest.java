@@ -0,0 +1,49 @@
+package com.training.model;
+
+import java.util.Map;
+
+/**
+ * Starts an email campaign. {@code audience} is COURSE_ENROLLEES (requires
+ * {@code courseId}) or UNVERIFIED_USERS. Templates are rendered per recipient
+ * with firstName, lastName, email, uniqueId, baseUrl and courseId, plus any
+ * entries from {@code variables}.
+ */
+public class CreateCampaignRequest {
+	private String template;
+	private String audience;
+	private String courseId;
+	private Map<String, String> variables;
+
+	public String getTemplate() {
+		return this.template;
+	}
+
+	public void setTemplate(String template) {
+		this.template = template;
+	}
+
+	public String getAudience() {
+		return this.audience;
+	}
+
+	public void setAudience(String audience) {
+		this.audience = audience;
+	}
+
+	public String getCourseId() {
+		return this.courseId;
+	}
+
+	public void setCourseId(String courseId) {
+		this.courseId = courseId;
+	}
+
+	public Map<String, String> getVariables() {
+		return this.variables;
+	}
+
+	public void setVariables(Map<String, String> variables) {
+		this.variables = variables;
+	}
+
+}
@@ -4,11 +4,14 @@ import java.util.Date;
 
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import com.training.constants.CollectionConstants;
 
 @Document(collection = CollectionConstants.CREDITS)
+@CompoundIndex(name = "userId_transactionDate", def = "{'userId': 1, 'transactionDate': -1}")
 public class CreditsDetails {
 	@Id
 	private String id;
@@ -17,6 +20,9 @@ public class CreditsDetails {
 	private String type;
 	private Date transactionDate;
 	private String courseId;
+	// Settlement that produced this event; makes replays of the same payment a no-op
+	@Indexed(unique = true, sparse = true)
+	private String transactionId;
 	@CreatedDate
 	private Date createdAt;
 
@@ -76,4 +82,12 @@ public class CreditsDetails {
 		this.createdAt = createdAt;
 	}
 
+	public String getTransactionId() {
+		return this.transactionId;
+	}
+
+	public void setTransactionId(String transactionId) {
+		this.transactionId = transactionId;
+	}
+
 }
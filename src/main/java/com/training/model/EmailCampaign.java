@@ -0,0 +1,157 @@
+package com.training.model;
+
+import java.util.Date;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.training.constants.CollectionConstants;
+
+/**
+ * A bulk email send. {@code lastCursor} is the _id of the last source document
+ * whose messages were queued, so a restarted campaign continues after it.
+ * {@code delivery} is filled on read with outbox counts per status.
+ */
+@Document(collection = CollectionConstants.EMAIL_CAMPAIGNS)
+public class EmailCampaign {
+	@Id
+	private String id;
+	private String template;
+	private String audience;
+	private String courseId;
+	private Map<String, String> variables;
+	private String locale;
+	private String status;
+	private String lastCursor;
+	private int queued;
+	private Date lockedUntil;
+	private String lastError;
+	private Date createdAt;
+	private Date startedAt;
+	private Date completedAt;
+	@Transient
+	private Map<String, Integer> delivery;
+
+	public String getId() {
+		return this.id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getTemplate() {
+		return this.template;
+	}
+
+	public void setTemplate(String template) {
+		this.template = template;
+	}
+
+	public String getAudience() {
+		return this.audience;
+	}
+
+	public void setAudience(String audience) {
+		this.audience = audience;
+	}
+
+	public String getCourseId() {
+		return this.courseId;
+	}
+
+	public void setCourseId(String courseId) {
+		this.courseId = courseId;
+	}
+
+	public Map<String, String> getVariables() {
+		return this.variables;
+	}
+
+	public void setVariables(Map<String, String> variables) {
+		this.variables = variables;
+	}
+
+	public String getLocale() {
+		return this.locale;
+	}
+
+	public void setLocale(String locale) {
+		this.locale = locale;
+	}
+
+	public String getStatus() {
+		return this.status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public String getLastCursor() {
+		return this.lastCursor;
+	}
+
+	public void setLastCursor(String lastCursor) {
+		this.lastCursor = lastCursor;
+	}
+
+	public int getQueued() {
+		return this.queued;
+	}
+
+	public void setQueued(int queued) {
+		this.queued = queued;
+	}
+
+	public Date getLockedUntil() {
+		return this.lockedUntil;
+	}
+
+	public void setLockedUntil(Date lockedUntil) {
+		this.lockedUntil = lockedUntil;
+	}
+
+	public String getLastError() {
+		return this.lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+
+	public Date getCreatedAt() {
+		return this.createdAt;
+	}
+
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public Date getStartedAt() {
+		return this.startedAt;
+	}
+
+	public void setStartedAt(Date startedAt) {
+		this.startedAt = startedAt;
+	}
+
+	public Date getCompletedAt() {
+		return this.completedAt;
+	}
+
+	public void setCompletedAt(Date completedAt) {
+		this.completedAt = completedAt;
+	}
+
+	public Map<String, Integer> getDelivery() {
+		return this.delivery;
+	}
+
+	public void setDelivery(Map<String, Integer> delivery) {
+		this.delivery = delivery;
+	}
+
+}
@@ -0,0 +1,187 @@
+package com.training.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.training.constants.CollectionConstants;
+
+@Document(collection = CollectionConstants.EMAIL_OUTBOX)
+@CompoundIndexes({
+		@CompoundIndex(name = "status_nextAttemptAt", def = "{'status': 1, 'nextAttemptAt': 1}"),
+		@CompoundIndex(name = "status_lockedUntil", def = "{'status': 1, 'lockedUntil': 1}") })
+public class EmailMessage {
+	@Id
+	private String id;
+	private String from;
+	private String to;
+	private String cc;
+	private String bcc;
+	private String subject;
+	private String text;
+	private String html;
+	private String status;
+	private int attempts;
+	private Date nextAttemptAt;
+	private Date lockedUntil;
+	private String lastError;
+	private Date createdAt;
+	// Delivered messages are purged after a week
+	@Indexed(name = "sentAt_ttl", expireAfterSeconds = 604800)
+	private Date sentAt;
+	@Indexed(sparse = true)
+	private String campaignId;
+	// Set for campaign messages so a resumed campaign cannot queue the same recipient twice
+	@Indexed(unique = true, sparse = true)
+	private String dedupeKey;
+	// The body carries a verify/reset link; the recipient's emailExpiry is set when it is actually sent
+	private boolean refreshTokenExpiry;
+
+	public String getId() {
+		return this.id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getFrom() {
+		return this.from;
+	}
+
+	public void setFrom(String from) {
+		this.from = from;
+	}
+
+	public String getTo() {
+		return this.to;
+	}
+
+	public void setTo(String to) {
+		this.to = to;
+	}
+
+	public String getCc() {
+		return this.cc;
+	}
+
+	public void setCc(String cc) {
+		this.cc = cc;
+	}
+
+	public String getBcc() {
+		return this.bcc;
+	}
+
+	public void setBcc(String bcc) {
+		this.bcc = bcc;
+	}
+
+	public String getSubject() {
+		return this.subject;
+	}
+
+	public void setSubject(String subject) {
+		this.subject = subject;
+	}
+
+	public String getText() {
+		return this.text;
+	}
+
+	public void setText(String text) {
+		this.text = text;
+	}
+
+	public String getHtml() {
+		return this.html;
+	}
+
+	public void setHtml(String html) {
+		this.html = html;
+	}
+
+	public String getStatus() {
+		return this.status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public int getAttempts() {
+		return this.attempts;
+	}
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+	public Date getNextAttemptAt() {
+		return this.nextAttemptAt;
+	}
+
+	public void setNextAttemptAt(Date nextAttemptAt) {
+		this.nextAttemptAt = nextAttemptAt;
+	}
+
+	public Date getLockedUntil() {
+		return this.lockedUntil;
+	}
+
+	public void setLockedUntil(Date lockedUntil) {
+		this.lockedUntil = lockedUntil;
+	}
+
+	public String getLastError() {
+		return this.lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+
+	public Date getCreatedAt() {
+		return this.createdAt;
+	}
+
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public Date getSentAt() {
+		return this.sentAt;
+	}
+
+	public void setSentAt(Date sentAt) {
+		this.sentAt = sentAt;
+	}
+
+	public String getCampaignId() {
+		return this.campaignId;
+	}
+
+	public void setCampaignId(String campaignId) {
+		this.campaignId = campaignId;
+	}
+
+	public String getDedupeKey() {
+		return this.dedupeKey;
+	}
+
+	public void setDedupeKey(String dedupeKey) {
+		this.dedupeKey = dedupeKey;
+	}
+
+	public boolean isRefreshTokenExpiry() {
+		return this.refreshTokenExpiry;
+	}
+
+	public void setRefreshTokenExpiry(boolean refreshTokenExpiry) {
+		this.refreshTokenExpiry = refreshTokenExpiry;
+	}
+}
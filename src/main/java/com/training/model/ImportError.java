@@ -0,0 +1,41 @@
+package com.training.model;
+
+public class ImportError {
+	private int row;
+	private String key;
+	private String message;
+
+	public ImportError() {
+	}
+
+	public ImportError(int row, String key, String message) {
+		this.row = row;
+		this.key = key;
+		this.message = message;
+	}
+
+	public int getRow() {
+		return this.row;
+	}
+
+	public void setRow(int row) {
+		this.row = row;
+	}
+
+	public String getKey() {
+		return this.key;
+	}
+
+	public void setKey(String key) {
+		this.key = key;
+	}
+
+	public String getMessage() {
+		return this.message;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+}
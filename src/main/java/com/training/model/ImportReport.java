@@ -0,0 +1,57 @@
+package com.training.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. Row errors are listed up to a configured limit;
+ * {@code failed} always counts every rejected row.
+ */
+public class ImportReport {
+	private int total;
+	private int imported;
+	private int failed;
+	private List<ImportError> errors = new ArrayList<>();
+	private boolean errorsTruncated;
+
+	public int getTotal() {
+		return this.total;
+	}
+
+	public void setTotal(int total) {
+		this.total = total;
+	}
+
+	public int getImported() {
+		return this.imported;
+	}
+
+	public void setImported(int imported) {
+		this.imported = imported;
+	}
+
+	public int getFailed() {
+		return this.failed;
+	}
+
+	public void setFailed(int failed) {
+		this.failed = failed;
+	}
+
+	public List<ImportError> getErrors() {
+		return this.errors;
+	}
+
+	public void setErrors(List<ImportError> errors) {
+		this.errors = errors;
+	}
+
+	public boolean isErrorsTruncated() {
+		return this.errorsTruncated;
+	}
+
+	public void setErrorsTruncated(boolean errorsTruncated) {
+		this.errorsTruncated = errorsTruncated;
+	}
+
+}
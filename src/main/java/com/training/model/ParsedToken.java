@@ -0,0 +1,46 @@
+package com.training.model;
+
+import java.util.Collection;
+import java.util.Date;
+
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * Result of a single verified parse of a JWT. Everything the filter and the
+ * login flow need is read from here instead of re-parsing the token.
+ */
+public class ParsedToken {
+	private final String token;
+	private final String subject;
+	private final Date expiration;
+	private final Collection<? extends GrantedAuthority> authorities;
+
+	public ParsedToken(String token, String subject, Date expiration,
+			Collection<? extends GrantedAuthority> authorities) {
+		this.token = token;
+		this.subject = subject;
+		this.expiration = expiration;
+		this.authorities = authorities;
+	}
+
+	public String getToken() {
+		return this.token;
+	}
+
+	public String getSubject() {
+		return this.subject;
+	}
+
+	public Date getExpiration() {
+		return this.expiration;
+	}
+
+	public Collection<? extends GrantedAuthority> getAuthorities() {
+		return this.authorities;
+	}
+
+	public boolean isExpired() {
+		return this.expiration == null || this.expiration.before(new Date());
+	}
+
+}
@@ -0,0 +1,18 @@
+package com.training.model;
+
+/**
+ * Body of the gateway's server-to-server callback: the Base64-encoded JSON
+ * payment status, signed through the X-VERIFY header.
+ */
+public class PaymentCallbackRequest {
+	private String response;
+
+	public String getResponse() {
+		return this.response;
+	}
+
+	public void setResponse(String response) {
+		this.response = response;
+	}
+
+}
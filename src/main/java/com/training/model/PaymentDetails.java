@@ -4,11 +4,14 @@ import java.util.Date;
 
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import com.training.constants.CollectionConstants;
 
 @Document(collection = CollectionConstants.PAYMENTS)
+@CompoundIndex(name = "userId_paymentDate", def = "{'userId': 1, 'paymentDate': -1}")
 public class PaymentDetails {
 	@Id
 	private String id;
@@ -20,6 +23,7 @@ public class PaymentDetails {
 	private boolean membershipTransaction;
 	@CreatedDate
 	private Date createdAt;
+	@Indexed(unique = true, sparse = true)
 	private String transactionId;
 	private String paymentMode;
 
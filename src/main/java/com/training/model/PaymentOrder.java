@@ -0,0 +1,177 @@
+package com.training.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.training.constants.CollectionConstants;
+
+/**
+ * A payment initiated with the gateway, recorded before the redirect so the
+ * callback can be matched to the user and course. Moves from PENDING to
+ * RECEIVED when its callback is accepted, then to COMPLETED once settled, or
+ * to FAILED if the gateway reports a failure.
+ */
+@Document(collection = CollectionConstants.PAYMENT_ORDERS)
+@CompoundIndex(name = "status_callbackReceivedAt", def = "{'status': 1, 'callbackReceivedAt': 1}")
+public class PaymentOrder {
+	@Id
+	private String id;
+	@Indexed(unique = true)
+	private String merchantTransactionId;
+	private String userId;
+	private String courseId;
+	private double amount;
+	private int creditsUsed;
+	private boolean membershipTransaction;
+	private String status;
+	private String gatewayTransactionId;
+	private String gatewayCode;
+	private String paymentMode;
+	private Date createdAt;
+	private Date callbackReceivedAt;
+	private Date lockedUntil;
+	private int settlementAttempts;
+	private Date settledAt;
+	private String lastError;
+
+	public String getId() {
+		return this.id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getMerchantTransactionId() {
+		return this.merchantTransactionId;
+	}
+
+	public void setMerchantTransactionId(String merchantTransactionId) {
+		this.merchantTransactionId = merchantTransactionId;
+	}
+
+	public String getUserId() {
+		return this.userId;
+	}
+
+	public void setUserId(String userId) {
+		this.userId = userId;
+	}
+
+	public String getCourseId() {
+		return this.courseId;
+	}
+
+	public void setCourseId(String courseId) {
+		this.courseId = courseId;
+	}
+
+	public double getAmount() {
+		return this.amount;
+	}
+
+	public void setAmount(double amount) {
+		this.amount = amount;
+	}
+
+	public int getCreditsUsed() {
+		return this.creditsUsed;
+	}
+
+	public void setCreditsUsed(int creditsUsed) {
+		this.creditsUsed = creditsUsed;
+	}
+
+	public boolean isMembershipTransaction() {
+		return this.membershipTransaction;
+	}
+
+	public void setMembershipTransaction(boolean membershipTransaction) {
+		this.membershipTransaction = membershipTransaction;
+	}
+
+	public String getStatus() {
+		return this.status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public String getGatewayTransactionId() {
+		return this.gatewayTransactionId;
+	}
+
+	public void setGatewayTransactionId(String gatewayTransactionId) {
+		this.gatewayTransactionId = gatewayTransactionId;
+	}
+
+	public String getGatewayCode() {
+		return this.gatewayCode;
+	}
+
+	public void setGatewayCode(String gatewayCode) {
+		this.gatewayCode = gatewayCode;
+	}
+
+	public String getPaymentMode() {
+		return this.paymentMode;
+	}
+
+	public void setPaymentMode(String paymentMode) {
+		this.paymentMode = paymentMode;
+	}
+
+	public Date getCreatedAt() {
+		return this.createdAt;
+	}
+
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public Date getCallbackReceivedAt() {
+		return this.callbackReceivedAt;
+	}
+
+	public void setCallbackReceivedAt(Date callbackReceivedAt) {
+		this.callbackReceivedAt = callbackReceivedAt;
+	}
+
+	public Date getLockedUntil() {
+		return this.lockedUntil;
+	}
+
+	public void setLockedUntil(Date lockedUntil) {
+		this.lockedUntil = lockedUntil;
+	}
+
+	public int getSettlementAttempts() {
+		return this.settlementAttempts;
+	}
+
+	public void setSettlementAttempts(int settlementAttempts) {
+		this.settlementAttempts = settlementAttempts;
+	}
+
+	public Date getSettledAt() {
+		return this.settledAt;
+	}
+
+	public void setSettledAt(Date settledAt) {
+		this.settledAt = settledAt;
+	}
+
+	public String getLastError() {
+		return this.lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+
+}
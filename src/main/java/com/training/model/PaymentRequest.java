@@ -5,11 +5,20 @@ public class PaymentRequest {
 	private String merchantTransactionId;
 	private String merchantUserId;
 	private String name;
+	// Ignored: the order is priced from the catalog
 	private double amount;
 	private String mobileNumber;
+	// Ignored: the payer is the authenticated user
+	private String userId;
+	private String courseId;
+	private int creditsUsed;
+	private boolean membershipTransaction;
 
 	// Add getters and setters
 
+	public PaymentRequest() {
+	}
+
 	public PaymentRequest(String transactionId, String MUID, String name, double amount, String number) {
 		this.merchantTransactionId = transactionId;
 		this.merchantUserId = MUID;
@@ -58,4 +67,36 @@ public class PaymentRequest {
 		this.mobileNumber = mobileNumber;
 	}
 
+	public String getUserId() {
+		return userId;
+	}
+
+	public void setUserId(String userId) {
+		this.userId = userId;
+	}
+
+	public String getCourseId() {
+		return courseId;
+	}
+
+	public void setCourseId(String courseId) {
+		this.courseId = courseId;
+	}
+
+	public int getCreditsUsed() {
+		return creditsUsed;
+	}
+
+	public void setCreditsUsed(int creditsUsed) {
+		this.creditsUsed = creditsUsed;
+	}
+
+	public boolean isMembershipTransaction() {
+		return membershipTransaction;
+	}
+
+	public void setMembershipTransaction(boolean membershipTransaction) {
+		this.membershipTransaction = membershipTransaction;
+	}
+
 }
@@ -3,12 +3,19 @@ package com.training.model;
 public class PaymentUrlResponse {
 	private String url;
 	private String message;
+	private String merchantTransactionId;
 
 	public PaymentUrlResponse(String url, String message) {
 		this.url = url;
 		this.message = message;
 	}
 
+	public PaymentUrlResponse(String url, String message, String merchantTransactionId) {
+		this.url = url;
+		this.message = message;
+		this.merchantTransactionId = merchantTransactionId;
+	}
+
 	public String getUrl() {
 		return this.url;
 	}
@@ -16,4 +23,8 @@ public class PaymentUrlResponse {
 	public String getMessage() {
 		return this.message;
 	}
+
+	public String getMerchantTransactionId() {
+		return this.merchantTransactionId;
+	}
 }
@@ -0,0 +1,44 @@
+package com.training.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.training.constants.CollectionConstants;
+
+/**
+ * A reserved referral code. The code is the _id, so the primary key index is
+ * what guarantees no two instances ever hand out the same code.
+ */
+@Document(collection = CollectionConstants.REFERRAL_CODES)
+public class ReferralCode {
+	@Id
+	private String code;
+	private Date reservedAt;
+
+	public ReferralCode() {
+	}
+
+	public ReferralCode(String code, Date reservedAt) {
+		this.code = code;
+		this.reservedAt = reservedAt;
+	}
+
+	public String getCode() {
+		return this.code;
+	}
+
+	public void setCode(String code) {
+		this.code = code;
+	}
+
+	public Date getReservedAt() {
+		return this.reservedAt;
+	}
+
+	public void setReservedAt(Date reservedAt) {
+		this.reservedAt = reservedAt;
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.training.model;
+
+/**
+ * Subject and bodies produced from an email template. Either body may be null
+ * when the template only defines the other one.
+ */
+public class RenderedEmail {
+	private final String subject;
+	private final String text;
+	private final String html;
+
+	public RenderedEmail(String subject, String text, String html) {
+		this.subject = subject;
+		this.text = text;
+		this.html = html;
+	}
+
+	public String getSubject() {
+		return this.subject;
+	}
+
+	public String getText() {
+		return this.text;
+	}
+
+	public String getHtml() {
+		return this.html;
+	}
+
+}
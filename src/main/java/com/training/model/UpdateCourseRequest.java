@@ -8,6 +8,7 @@ public class UpdateCourseRequest {
 	private int price;
 	private int memberPrice;
 	private int nonMemberPrice;
+	private Long version;
 
 	public String getName() {
 		return this.name;
@@ -65,4 +66,12 @@ public class UpdateCourseRequest {
 		this.nonMemberPrice = nonMemberPrice;
 	}
 
-}
\ No newline at end of file
+	public Long getVersion() {
+		return this.version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
+}
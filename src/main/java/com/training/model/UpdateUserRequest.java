@@ -10,6 +10,7 @@ public class UpdateUserRequest {
 	private String city;
 	private String state;
 	private String country;
+	private Long version;
 
 	public String getFirstName() {
 		return firstName;
@@ -83,4 +84,12 @@ public class UpdateUserRequest {
 		this.country = country;
 	}
 
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
 }
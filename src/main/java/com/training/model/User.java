@@ -1,12 +1,14 @@
 package com.training.model;
 
 import java.util.Date;
+import java.util.List;
 
 import javax.validation.constraints.NotNull;
 
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -27,6 +29,7 @@ public class User {
 	private String city;
 	private String state;
 	private String zipCode;
+	@Indexed
 	private String referralId;
 	private String country;
 	@CreatedDate
@@ -48,6 +51,11 @@ public class User {
 	@JsonIgnore
 	private Date emailExpiry;
 	private int credits;
+	@JsonIgnore
+	@Indexed
+	private List<String> searchTokens;
+	@Version
+	private Long version;
 
 	public String getId() {
 		return this.id;
@@ -249,4 +257,20 @@ public class User {
 		this.credits = credits;
 	}
 
+	public List<String> getSearchTokens() {
+		return this.searchTokens;
+	}
+
+	public void setSearchTokens(List<String> searchTokens) {
+		this.searchTokens = searchTokens;
+	}
+
+	public Long getVersion() {
+		return this.version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
 }
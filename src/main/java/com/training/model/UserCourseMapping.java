@@ -5,11 +5,13 @@ import java.util.Date;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import com.training.constants.CollectionConstants;
 
 @Document(collection = CollectionConstants.USER_COURSE_MAPPING)
+@CompoundIndex(name = "userId_courseId", def = "{'userId': 1, 'courseId': 1}", unique = true)
 public class UserCourseMapping {
 	@Id
 	private String id;
@@ -22,6 +24,7 @@ public class UserCourseMapping {
 	private Date lastModifiedDate;
 	private Date expiryDate;
 	private String status;
+	private String lastTransactionId;
 
 	public String getId() {
 		return this.id;
@@ -87,4 +90,12 @@ public class UserCourseMapping {
 		this.status = status;
 	}
 
+	public String getLastTransactionId() {
+		return this.lastTransactionId;
+	}
+
+	public void setLastTransactionId(String lastTransactionId) {
+		this.lastTransactionId = lastTransactionId;
+	}
+
 }
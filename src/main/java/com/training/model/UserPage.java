@@ -0,0 +1,33 @@
+package com.training.model;
+
+import java.util.List;
+
+public class UserPage {
+	private List<UserSummary> users;
+	private String nextCursor;
+
+	public UserPage() {
+	}
+
+	public UserPage(List<UserSummary> users, String nextCursor) {
+		this.users = users;
+		this.nextCursor = nextCursor;
+	}
+
+	public List<UserSummary> getUsers() {
+		return this.users;
+	}
+
+	public void setUsers(List<UserSummary> users) {
+		this.users = users;
+	}
+
+	public String getNextCursor() {
+		return this.nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+}
@@ -0,0 +1,206 @@
+package com.training.model;
+
+import java.util.Date;
+
+/**
+ * Read model for user listing and detail endpoints. Loaded with a Mongo field
+ * projection so credentials, tokens and expiry fields never leave the
+ * database.
+ */
+public class UserSummary {
+
+	public static final String[] FIELDS = { "firstName", "lastName", "email", "phone", "address", "city", "state",
+			"zipCode", "country", "referralId", "referredBy", "role", "status", "member", "emailVerified",
+			"phoneVerified", "credits", "createdAt", "lastModifiedDate", "version" };
+
+	private String id;
+	private String firstName;
+	private String lastName;
+	private String email;
+	private String phone;
+	private String address;
+	private String city;
+	private String state;
+	private String zipCode;
+	private String country;
+	private String referralId;
+	private String referredBy;
+	private String role;
+	private String status;
+	private boolean member;
+	private boolean emailVerified;
+	private boolean phoneVerified;
+	private int credits;
+	private Date createdAt;
+	private Date lastModifiedDate;
+	private Long version;
+
+	public String getId() {
+		return this.id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getFirstName() {
+		return this.firstName;
+	}
+
+	public void setFirstName(String firstName) {
+		this.firstName = firstName;
+	}
+
+	public String getLastName() {
+		return this.lastName;
+	}
+
+	public void setLastName(String lastName) {
+		this.lastName = lastName;
+	}
+
+	public String getEmail() {
+		return this.email;
+	}
+
+	public void setEmail(String email) {
+		this.email = email;
+	}
+
+	public String getPhone() {
+		return this.phone;
+	}
+
+	public void setPhone(String phone) {
+		this.phone = phone;
+	}
+
+	public String getAddress() {
+		return this.address;
+	}
+
+	public void setAddress(String address) {
+		this.address = address;
+	}
+
+	public String getCity() {
+		return this.city;
+	}
+
+	public void setCity(String city) {
+		this.city = city;
+	}
+
+	public String getState() {
+		return this.state;
+	}
+
+	public void setState(String state) {
+		this.state = state;
+	}
+
+	public String getZipCode() {
+		return this.zipCode;
+	}
+
+	public void setZipCode(String zipCode) {
+		this.zipCode = zipCode;
+	}
+
+	public String getCountry() {
+		return this.country;
+	}
+
+	public void setCountry(String country) {
+		this.country = country;
+	}
+
+	public String getReferralId() {
+		return this.referralId;
+	}
+
+	public void setReferralId(String referralId) {
+		this.referralId = referralId;
+	}
+
+	public String getReferredBy() {
+		return this.referredBy;
+	}
+
+	public void setReferredBy(String referredBy) {
+		this.referredBy = referredBy;
+	}
+
+	public String getRole() {
+		return this.role;
+	}
+
+	public void setRole(String role) {
+		this.role = role;
+	}
+
+	public String getStatus() {
+		return this.status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public boolean isMember() {
+		return this.member;
+	}
+
+	public void setMember(boolean member) {
+		this.member = member;
+	}
+
+	public boolean isEmailVerified() {
+		return this.emailVerified;
+	}
+
+	public void setEmailVerified(boolean emailVerified) {
+		this.emailVerified = emailVerified;
+	}
+
+	public boolean isPhoneVerified() {
+		return this.phoneVerified;
+	}
+
+	public void setPhoneVerified(boolean phoneVerified) {
+		this.phoneVerified = phoneVerified;
+	}
+
+	public int getCredits() {
+		return this.credits;
+	}
+
+	public void setCredits(int credits) {
+		this.credits = credits;
+	}
+
+	public Date getCreatedAt() {
+		return this.createdAt;
+	}
+
+	public void setCreatedAt(Date createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public Date getLastModifiedDate() {
+		return this.lastModifiedDate;
+	}
+
+	public void setLastModifiedDate(Date lastModifiedDate) {
+		this.lastModifiedDate = lastModifiedDate;
+	}
+
+	public Long getVersion() {
+		return this.version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
+}
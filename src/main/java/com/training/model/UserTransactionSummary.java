@@ -0,0 +1,126 @@
+package com.training.model;
+
+import java.util.Date;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.training.constants.CollectionConstants;
+
+/**
+ * Per-user spend and credits summary. Returned by the summary endpoint and,
+ * when materialisation is enabled, stored keyed by userId and incremented on
+ * every transaction. Month buckets are keyed {@code yyyy-MM} in UTC.
+ * <p>
+ * A stored summary counts events created from {@code trackingSince} onwards
+ * incrementally; everything created before it is added once by the seed
+ * aggregation, which sets {@code seeded}. Unseeded documents are not served.
+ */
+@Document(collection = CollectionConstants.USER_SUMMARY)
+public class UserTransactionSummary {
+	@Id
+	private String id;
+	private String userId;
+	private int balance;
+	private int totalSpent;
+	private int creditsEarned;
+	private int creditsUsed;
+	private Map<String, Integer> spendByCourse;
+	private Map<String, Integer> spendByMonth;
+	private Date lastUpdated;
+	@JsonIgnore
+	private Date trackingSince;
+	@JsonIgnore
+	private boolean seeded;
+
+	public String getId() {
+		return this.id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getUserId() {
+		return this.userId;
+	}
+
+	public void setUserId(String userId) {
+		this.userId = userId;
+	}
+
+	public int getBalance() {
+		return this.balance;
+	}
+
+	public void setBalance(int balance) {
+		this.balance = balance;
+	}
+
+	public int getTotalSpent() {
+		return this.totalSpent;
+	}
+
+	public void setTotalSpent(int totalSpent) {
+		this.totalSpent = totalSpent;
+	}
+
+	public int getCreditsEarned() {
+		return this.creditsEarned;
+	}
+
+	public void setCreditsEarned(int creditsEarned) {
+		this.creditsEarned = creditsEarned;
+	}
+
+	public int getCreditsUsed() {
+		return this.creditsUsed;
+	}
+
+	public void setCreditsUsed(int creditsUsed) {
+		this.creditsUsed = creditsUsed;
+	}
+
+	public Map<String, Integer> getSpendByCourse() {
+		return this.spendByCourse;
+	}
+
+	public void setSpendByCourse(Map<String, Integer> spendByCourse) {
+		this.spendByCourse = spendByCourse;
+	}
+
+	public Map<String, Integer> getSpendByMonth() {
+		return this.spendByMonth;
+	}
+
+	public void setSpendByMonth(Map<String, Integer> spendByMonth) {
+		this.spendByMonth = spendByMonth;
+	}
+
+	public Date getLastUpdated() {
+		return this.lastUpdated;
+	}
+
+	public void setLastUpdated(Date lastUpdated) {
+		this.lastUpdated = lastUpdated;
+	}
+
+	public Date getTrackingSince() {
+		return this.trackingSince;
+	}
+
+	public void setTrackingSince(Date trackingSince) {
+		this.trackingSince = trackingSince;
+	}
+
+	public boolean isSeeded() {
+		return this.seeded;
+	}
+
+	public void setSeeded(boolean seeded) {
+		this.seeded = seeded;
+	}
+
+}
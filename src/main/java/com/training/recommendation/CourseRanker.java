@@ -0,0 +1,15 @@
+package com.training.recommendation;
+
+import java.util.List;
+
+import com.training.model.Course;
+
+/**
+ * Hook for ordering recommended courses. Every ranker bean is applied in
+ * {@link org.springframework.core.annotation.Order} order to the list produced
+ * by {@link CourseRecommendationEngine}.
+ */
+public interface CourseRanker {
+
+	List<Course> rank(String userId, List<Course> courses);
+}
@@ -0,0 +1,159 @@
+package com.training.recommendation;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.training.cache.CourseCatalogCache;
+import com.training.model.Course;
+import com.training.model.UserCourseMapping;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Computes "recommended courses" in memory. The active catalog is a bitset
+ * over course ordinals and each user's enrollments are a bitset over the same
+ * ordinals, so recommendations are a single AND-NOT. Enrollment bitsets are
+ * cached per user and re-derived (without a Mongo read) whenever the catalog
+ * snapshot changes generation. Entries expire a fixed time after they were
+ * loaded from Mongo, not after they were last re-derived, since enrollments
+ * made through another instance are only picked up by a reload.
+ */
+@Component
+public class CourseRecommendationEngine {
+
+	private final MongoTemplate mongoTemplate;
+
+	private final CourseCatalogCache courseCatalogCache;
+
+	private final ObjectProvider<CourseRanker> courseRankers;
+
+	private final Cache<String, Enrollments> enrollments;
+
+	public CourseRecommendationEngine(MongoTemplate mongoTemplate, CourseCatalogCache courseCatalogCache,
+			ObjectProvider<CourseRanker> courseRankers, MeterRegistry meterRegistry,
+			@Value("${courses.recommendations.maxUsers:50000}") long maxUsers,
+			@Value("${courses.recommendations.enrollmentTtlSeconds:300}") long enrollmentTtlSeconds) {
+		this.mongoTemplate = mongoTemplate;
+		this.courseCatalogCache = courseCatalogCache;
+		this.courseRankers = courseRankers;
+		this.enrollments = Caffeine.newBuilder().maximumSize(maxUsers)
+				.expireAfter(new LoadTimeExpiry(TimeUnit.SECONDS.toNanos(enrollmentTtlSeconds))).recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, this.enrollments, "courses.enrollments.cache");
+	}
+
+	public List<Course> recommend(String userId) {
+		CourseCatalogCache.Snapshot catalog = this.courseCatalogCache.getSnapshot();
+		BitSet recommended = catalog.getActiveBits();
+		recommended.andNot(this.getEnrollments(userId, catalog).bits);
+
+		List<Course> courses = new ArrayList<>(recommended.cardinality());
+		List<Course> activeCourses = catalog.getActiveCourses();
+		for (int i = recommended.nextSetBit(0); i >= 0; i = recommended.nextSetBit(i + 1)) {
+			courses.add(activeCourses.get(i));
+		}
+
+		for (CourseRanker courseRanker : this.courseRankers.orderedStream().collect(Collectors.toList())) {
+			courses = courseRanker.rank(userId, courses);
+		}
+		return courses;
+	}
+
+	public Set<String> getEnrolledCourseIds(String userId) {
+		return this.getEnrollments(userId, this.courseCatalogCache.getSnapshot()).courseIds;
+	}
+
+	/**
+	 * Drops the cached enrollments for a user, e.g. after a new enrollment.
+	 */
+	public void invalidate(String userId) {
+		this.enrollments.invalidate(userId);
+	}
+
+	private Enrollments getEnrollments(String userId, CourseCatalogCache.Snapshot catalog) {
+		Enrollments cached = this.enrollments.get(userId,
+				id -> new Enrollments(this.loadCourseIds(id), catalog, System.nanoTime()));
+		if (cached.generation != catalog.getGeneration()) {
+			// Catalog ordinals changed, so re-map the same course ids onto the new ones. The
+			// original load time is kept, and the entry is only replaced if it wasn't invalidated
+			Enrollments remapped = new Enrollments(cached.courseIds, catalog, cached.loadedAt);
+			this.enrollments.asMap().replace(userId, cached, remapped);
+			cached = remapped;
+		}
+		return cached;
+	}
+
+	private Set<String> loadCourseIds(String userId) {
+		Query query = new Query();
+		query.addCriteria(Criteria.where("userId").is(userId));
+		query.fields().include("courseId");
+		return Collections.unmodifiableSet(this.mongoTemplate.find(query, UserCourseMapping.class).stream()
+				.map(UserCourseMapping::getCourseId).collect(Collectors.toSet()));
+	}
+
+	private static class Enrollments {
+		private final Set<String> courseIds;
+		private final BitSet bits;
+		private final long generation;
+		private final long loadedAt;
+
+		Enrollments(Set<String> courseIds, CourseCatalogCache.Snapshot catalog, long loadedAt) {
+			BitSet enrolled = new BitSet();
+			for (String courseId : courseIds) {
+				int ordinal = catalog.getOrdinal(courseId);
+				if (ordinal >= 0) {
+					enrolled.set(ordinal);
+				}
+			}
+			this.courseIds = courseIds;
+			this.bits = enrolled;
+			this.generation = catalog.getGeneration();
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	private static class LoadTimeExpiry implements Expiry<String, Enrollments> {
+		private final long ttlNanos;
+
+		LoadTimeExpiry(long ttlNanos) {
+			this.ttlNanos = ttlNanos;
+		}
+
+		@Override
+		public long expireAfterCreate(String userId, Enrollments enrollments, long currentTime) {
+			return this.remaining(enrollments, currentTime);
+		}
+
+		@Override
+		public long expireAfterUpdate(String userId, Enrollments enrollments, long currentTime,
+				long currentDuration) {
+			return this.remaining(enrollments, currentTime);
+		}
+
+		@Override
+		public long expireAfterRead(String userId, Enrollments enrollments, long currentTime,
+				long currentDuration) {
+			return currentDuration;
+		}
+
+		private long remaining(Enrollments enrollments, long currentTime) {
+			return Math.max(0, this.ttlNanos - (currentTime - enrollments.loadedAt));
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.training.resource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.training.model.CreateCampaignRequest;
+import com.training.service.CampaignService;
+
+@RestController
+@RequestMapping("/api/v1/training/campaigns")
+public class CampaignResource {
+
+	@Autowired
+	private CampaignService campaignService;
+
+	private static final Logger logger = LoggerFactory.getLogger(CampaignResource.class);
+
+	@PostMapping("/createcampaign")
+	public ResponseEntity<?> createCampaign(@RequestBody CreateCampaignRequest request) {
+		logger.info("Creating new email campaign......");
+		return this.campaignService.createCampaign(request);
+	}
+
+	@GetMapping("/getcampaign")
+	public ResponseEntity<?> getCampaign(@RequestParam String campaignId) {
+		return this.campaignService.getCampaign(campaignId);
+	}
+}
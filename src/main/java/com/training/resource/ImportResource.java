@@ -0,0 +1,54 @@
+package com.training.resource;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.training.service.ImportService;
+import com.training.utils.RecordReader;
+
+/**
+ * Bulk import endpoints. The request body is read as a stream (CSV with a
+ * header row, or NDJSON), so the file is never held in memory.
+ */
+@RestController
+@RequestMapping("/api/v1/training/imports")
+public class ImportResource {
+
+	@Autowired
+	private ImportService importService;
+
+	private static final Logger logger = LoggerFactory.getLogger(ImportResource.class);
+
+	@PostMapping("/users")
+	public ResponseEntity<?> importUsers(HttpServletRequest request, @RequestParam(required = false) String format)
+			throws IOException {
+		logger.info("Importing users......");
+		return this.importService.importUsers(request.getInputStream(), this.getFormat(request, format));
+	}
+
+	@PostMapping("/courses")
+	public ResponseEntity<?> importCourses(HttpServletRequest request, @RequestParam(required = false) String format)
+			throws IOException {
+		logger.info("Importing courses......");
+		return this.importService.importCourses(request.getInputStream(), this.getFormat(request, format));
+	}
+
+	private String getFormat(HttpServletRequest request, String format) {
+		if (format != null) {
+			return format;
+		}
+		String contentType = request.getContentType();
+		return contentType != null && contentType.toLowerCase().contains("csv") ? RecordReader.CSV
+				: RecordReader.NDJSON;
+	}
+}
@@ -1,14 +1,18 @@
 package com.training.resource;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.training.model.PaymentCallbackRequest;
 import com.training.model.PaymentRequest;
 import com.training.service.PaymentService;
 
@@ -22,8 +26,14 @@ public class PaymentResource {
 	private static final Logger logger = LoggerFactory.getLogger(PaymentResource.class);
 
 	@PostMapping("/initiatepayment")
-	public ResponseEntity<?> createPayment(@RequestBody PaymentRequest request) {
+	public CompletableFuture<ResponseEntity<?>> createPayment(@RequestBody PaymentRequest request) {
 		logger.info("Creating new payment......");
-		return this.paymentService.initiatePayment(request);
+		return this.paymentService.initiatePaymentAsync(request);
+	}
+
+	@PostMapping("/callback")
+	public ResponseEntity<?> paymentCallback(@RequestHeader(value = "X-VERIFY", required = false) String checksum,
+			@RequestBody PaymentCallbackRequest callback) {
+		return this.paymentService.handleCallback(checksum, callback);
 	}
 }
@@ -43,4 +43,9 @@ public class TransactionResource {
 	public ResponseEntity<?> getCreditsByUser(@RequestParam String userId) {
 		return this.transactionService.getCreditsByUser(userId);
 	}
+
+	@GetMapping("/summary/byuser")
+	public ResponseEntity<?> getSummaryByUser(@RequestParam String userId) {
+		return this.transactionService.getSummaryByUser(userId);
+	}
 }
\ No newline at end of file
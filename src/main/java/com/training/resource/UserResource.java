@@ -14,6 +14,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.training.constants.TrainingConstants;
 import com.training.model.CreateUserRequest;
@@ -36,8 +37,14 @@ public class UserResource {
 	}
 
 	@GetMapping("/getusers")
-	public ResponseEntity<?> getUsers(@RequestParam(required = false) String searchInput) {
-		return this.userService.getUsers(searchInput);
+	public ResponseEntity<?> getUsers(@RequestParam(required = false) String searchInput,
+			@RequestParam(required = false) String cursor, @RequestParam(required = false) Integer pageSize) {
+		return this.userService.getUsers(searchInput, cursor, pageSize);
+	}
+
+	@GetMapping("/getusers/stream")
+	public ResponseEntity<StreamingResponseBody> streamUsers(@RequestParam(required = false) String searchInput) {
+		return this.userService.streamUsers(searchInput);
 	}
 
 	@GetMapping("/getuser")
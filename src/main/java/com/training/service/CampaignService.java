@@ -0,0 +1,14 @@
+package com.training.service;
+
+import org.springframework.http.ResponseEntity;
+
+import com.training.model.CreateCampaignRequest;
+
+public interface CampaignService {
+
+	ResponseEntity<?> createCampaign(CreateCampaignRequest request);
+
+	ResponseEntity<?> getCampaign(String campaignId);
+
+	void runCampaign(String campaignId);
+}
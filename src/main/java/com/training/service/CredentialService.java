@@ -0,0 +1,10 @@
+package com.training.service;
+
+import com.training.model.User;
+
+public interface CredentialService {
+
+	String encodePassword(String rawPassword);
+
+	boolean verifyPassword(User user, String rawPassword);
+}
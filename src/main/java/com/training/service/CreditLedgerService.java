@@ -0,0 +1,10 @@
+package com.training.service;
+
+import com.training.model.CreditsDetails;
+
+public interface CreditLedgerService {
+
+	boolean recordCreditEvent(CreditsDetails creditsDetails);
+
+	void reconcileBalances();
+}
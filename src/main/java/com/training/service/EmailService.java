@@ -1,7 +1,16 @@
 package com.training.service;
 
+import java.util.List;
+
+import com.training.model.EmailMessage;
+import com.training.model.RenderedEmail;
+
 public interface EmailService {
 
 	void send(String from, String to, String subject, String text, String cc, String bcc);
 
+	void send(String from, String to, RenderedEmail content);
+
+	int enqueueAll(List<EmailMessage> emails);
+
 }
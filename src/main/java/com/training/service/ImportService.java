@@ -0,0 +1,12 @@
+package com.training.service;
+
+import java.io.InputStream;
+
+import org.springframework.http.ResponseEntity;
+
+public interface ImportService {
+
+	ResponseEntity<?> importUsers(InputStream inputStream, String format);
+
+	ResponseEntity<?> importCourses(InputStream inputStream, String format);
+}
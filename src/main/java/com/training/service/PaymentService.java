@@ -1,11 +1,18 @@
 package com.training.service;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.http.ResponseEntity;
 
+import com.training.model.PaymentCallbackRequest;
 import com.training.model.PaymentRequest;
 
 public interface PaymentService {
 
 	ResponseEntity<?> initiatePayment(PaymentRequest paymentRequest);
 
+	CompletableFuture<ResponseEntity<?>> initiatePaymentAsync(PaymentRequest paymentRequest);
+
+	ResponseEntity<?> handleCallback(String checksum, PaymentCallbackRequest callback);
+
 }
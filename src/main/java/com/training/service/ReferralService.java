@@ -1,5 +1,9 @@
 package com.training.service;
 
+import java.util.List;
+
 public interface ReferralService {
 	String generateUniqueReferralId();
+
+	List<String> generateUniqueReferralIds(int count);
 }
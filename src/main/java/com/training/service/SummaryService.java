@@ -0,0 +1,14 @@
+package com.training.service;
+
+import com.training.model.CreditsDetails;
+import com.training.model.PaymentDetails;
+import com.training.model.UserTransactionSummary;
+
+public interface SummaryService {
+
+	UserTransactionSummary getSummary(String userId);
+
+	void recordPayment(PaymentDetails paymentDetails);
+
+	void recordCredit(CreditsDetails creditsDetails);
+}
@@ -14,4 +14,6 @@ public interface TransactionService {
 
 	ResponseEntity<?> getCreditsByUser(String userId);
 
+	ResponseEntity<?> getSummaryByUser(String userId);
+
 }
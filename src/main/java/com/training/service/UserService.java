@@ -1,6 +1,7 @@
 package com.training.service;
 
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.training.model.CreateUserRequest;
 import com.training.model.UpdateUserRequest;
@@ -9,7 +10,9 @@ public interface UserService {
 
 	ResponseEntity<?> createUser(CreateUserRequest request);
 
-	ResponseEntity<?> getUsers(String searchInput);
+	ResponseEntity<?> getUsers(String searchInput, String cursor, Integer pageSize);
+
+	ResponseEntity<StreamingResponseBody> streamUsers(String searchInput);
 
 	ResponseEntity<?> getUser(String customerId);
 
@@ -22,6 +25,4 @@ public interface UserService {
 	ResponseEntity<?> verifyEmail(String uniqueId);
 
 	ResponseEntity<?> sendEmail(String userId, String operation);
-
-	void calculateRemainingCredits(String userId);
 }
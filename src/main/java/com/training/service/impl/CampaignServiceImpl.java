@@ -0,0 +1,310 @@
+package com.training.service.impl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.training.config.AsyncConfig;
+import com.training.constants.TrainingConstants;
+import com.training.model.CreateCampaignRequest;
+import com.training.model.EmailCampaign;
+import com.training.model.EmailMessage;
+import com.training.model.RenderedEmail;
+import com.training.model.User;
+import com.training.model.UserCourseMapping;
+import com.training.service.CampaignService;
+import com.training.service.EmailService;
+import com.training.template.EmailLinks;
+import com.training.template.EmailTemplateEngine;
+
+/**
+ * Fans a template out to a cohort of users. The audience is read with a
+ * cursor ordered by _id and queued on the email outbox one chunk at a time;
+ * after each chunk the campaign records the last _id and renews its lease.
+ * A campaign whose lease has lapsed (e.g. after a restart) is picked up again
+ * and continues from that cursor, and the outbox dedupe key keeps a replayed
+ * chunk from mailing anyone twice. Sending itself is rate limited by the
+ * outbox dispatcher.
+ */
+@Service
+public class CampaignServiceImpl implements CampaignService {
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private EmailService emailService;
+
+	@Autowired
+	private EmailTemplateEngine emailTemplateEngine;
+
+	@Autowired
+	private EmailLinks emailLinks;
+
+	@Autowired
+	@Qualifier(AsyncConfig.CAMPAIGN_EXECUTOR)
+	private Executor campaignExecutor;
+
+	@Value("${campaigns.chunkSize:500}")
+	private int chunkSize;
+
+	@Value("${campaigns.leaseMs:300000}")
+	private long leaseMs;
+
+	@Value("${campaigns.from:no-reply@suchiit.com}")
+	private String fromAddress;
+
+	private static final String[] USER_FIELDS = { "email", "firstName", "lastName", "uniqueId" };
+
+	private static final Logger logger = LoggerFactory.getLogger(CampaignServiceImpl.class);
+
+	@Override
+	public ResponseEntity<?> createCampaign(CreateCampaignRequest request) {
+		if (StringUtils.isEmpty(request.getTemplate()) || !this.emailTemplateEngine.exists(request.getTemplate())) {
+			return new ResponseEntity<>("Unknown email template", HttpStatus.BAD_REQUEST);
+		}
+		if (TrainingConstants.COURSE_ENROLLEES.equals(request.getAudience())) {
+			if (StringUtils.isEmpty(request.getCourseId())) {
+				return new ResponseEntity<>("courseId is required for course campaigns", HttpStatus.BAD_REQUEST);
+			}
+		} else if (!TrainingConstants.UNVERIFIED_USERS.equals(request.getAudience())) {
+			return new ResponseEntity<>("Unsupported campaign audience", HttpStatus.BAD_REQUEST);
+		}
+
+		EmailCampaign campaign = new EmailCampaign();
+		campaign.setTemplate(request.getTemplate());
+		campaign.setAudience(request.getAudience());
+		campaign.setCourseId(request.getCourseId());
+		campaign.setVariables(request.getVariables());
+		campaign.setLocale(LocaleContextHolder.getLocale().toLanguageTag());
+		campaign.setStatus(TrainingConstants.PENDING);
+		campaign.setCreatedAt(new Date());
+		this.mongoTemplate.insert(campaign);
+		logger.info("Created {} campaign {} with template {}", campaign.getAudience(), campaign.getId(),
+				campaign.getTemplate());
+
+		this.startCampaign(campaign.getId());
+		return new ResponseEntity<>(campaign, HttpStatus.ACCEPTED);
+	}
+
+	@Override
+	public ResponseEntity<?> getCampaign(String campaignId) {
+		EmailCampaign campaign = this.mongoTemplate.findById(campaignId, EmailCampaign.class);
+		if (campaign == null) {
+			return new ResponseEntity<>("Campaign not found", HttpStatus.NOT_FOUND);
+		}
+
+		Aggregation aggregation = Aggregation.newAggregation(
+				Aggregation.match(Criteria.where("campaignId").is(campaignId)),
+				Aggregation.group("status").count().as("count"));
+		Map<String, Integer> delivery = new LinkedHashMap<>();
+		for (Document result : this.mongoTemplate.aggregate(aggregation, EmailMessage.class, Document.class)) {
+			delivery.put(result.getString("_id"), ((Number) result.get("count")).intValue());
+		}
+		campaign.setDelivery(delivery);
+		return new ResponseEntity<>(campaign, HttpStatus.OK);
+	}
+
+	/**
+	 * Picks up campaigns that are not finished and not leased, which covers
+	 * both the first poll after startup and campaigns orphaned by another
+	 * instance.
+	 */
+	@Scheduled(fixedDelayString = "${campaigns.resumeIntervalMs:60000}",
+			initialDelayString = "${campaigns.resumeInitialDelayMs:30000}")
+	public void resumeCampaigns() {
+		Query query = new Query(Criteria.where("status").in(TrainingConstants.PENDING, TrainingConstants.RUNNING)
+				.orOperator(Criteria.where("lockedUntil").is(null), Criteria.where("lockedUntil").lt(new Date())));
+		query.fields().include("_id");
+		for (EmailCampaign campaign : this.mongoTemplate.find(query, EmailCampaign.class)) {
+			logger.info("Resuming email campaign {}", campaign.getId());
+			if (!this.startCampaign(campaign.getId())) {
+				break;
+			}
+		}
+	}
+
+	private boolean startCampaign(String campaignId) {
+		try {
+			this.campaignExecutor.execute(() -> this.runCampaign(campaignId));
+			return true;
+		} catch (TaskRejectedException e) {
+			logger.warn("Campaign executor is full; campaign {} will be picked up by the next resume sweep",
+					campaignId);
+			return false;
+		}
+	}
+
+	@Override
+	public void runCampaign(String campaignId) {
+		EmailCampaign campaign = this.claim(campaignId);
+		if (campaign == null) {
+			logger.info("Campaign {} is finished or running elsewhere", campaignId);
+			return;
+		}
+
+		try {
+			if (TrainingConstants.COURSE_ENROLLEES.equals(campaign.getAudience())) {
+				this.fanOutToCourse(campaign);
+			} else {
+				this.fanOutToUnverified(campaign);
+			}
+
+			Update update = new Update();
+			update.set("status", TrainingConstants.COMPLETED);
+			update.set("completedAt", new Date());
+			update.unset("lockedUntil");
+			this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(campaignId)), update,
+					EmailCampaign.class);
+			logger.info("Campaign {} queued {} emails", campaignId, campaign.getQueued());
+		} catch (RuntimeException e) {
+			logger.error("Campaign {} failed", campaignId, e);
+			Update update = new Update();
+			update.set("status", TrainingConstants.FAILED);
+			update.set("lastError", e.getMessage());
+			update.unset("lockedUntil");
+			this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(campaignId)), update,
+					EmailCampaign.class);
+		}
+	}
+
+	private EmailCampaign claim(String campaignId) {
+		Date now = new Date();
+		Query query = new Query(Criteria.where("_id").is(campaignId).and("status")
+				.in(TrainingConstants.PENDING, TrainingConstants.RUNNING)
+				.orOperator(Criteria.where("lockedUntil").is(null), Criteria.where("lockedUntil").lt(now)));
+		Update update = new Update();
+		update.set("status", TrainingConstants.RUNNING);
+		update.set("lockedUntil", new Date(now.getTime() + this.leaseMs));
+		update.min("startedAt", now);
+		return this.mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+				EmailCampaign.class);
+	}
+
+	private void fanOutToUnverified(EmailCampaign campaign) {
+		Query query = new Query();
+		query.addCriteria(Criteria.where("emailVerified").is(false).and("status").is(TrainingConstants.ACTIVE));
+		this.afterCursor(query, campaign);
+		query.fields().include(USER_FIELDS);
+
+		List<User> chunk = new ArrayList<>(this.chunkSize);
+		try (Stream<User> users = this.mongoTemplate.stream(query, User.class)) {
+			Iterator<User> iterator = users.iterator();
+			while (iterator.hasNext()) {
+				chunk.add(iterator.next());
+				if (chunk.size() == this.chunkSize || !iterator.hasNext()) {
+					this.queueChunk(campaign, chunk, chunk.get(chunk.size() - 1).getId());
+					chunk.clear();
+				}
+			}
+		}
+	}
+
+	private void fanOutToCourse(EmailCampaign campaign) {
+		Query query = new Query();
+		query.addCriteria(Criteria.where("courseId").is(campaign.getCourseId()));
+		this.afterCursor(query, campaign);
+		query.fields().include("userId");
+
+		List<UserCourseMapping> chunk = new ArrayList<>(this.chunkSize);
+		try (Stream<UserCourseMapping> mappings = this.mongoTemplate.stream(query, UserCourseMapping.class)) {
+			Iterator<UserCourseMapping> iterator = mappings.iterator();
+			while (iterator.hasNext()) {
+				chunk.add(iterator.next());
+				if (chunk.size() == this.chunkSize || !iterator.hasNext()) {
+					Query userQuery = new Query();
+					userQuery.addCriteria(Criteria.where("email")
+							.in(chunk.stream().map(UserCourseMapping::getUserId).collect(Collectors.toList()))
+							.and("status").is(TrainingConstants.ACTIVE));
+					userQuery.fields().include(USER_FIELDS);
+					this.queueChunk(campaign, this.mongoTemplate.find(userQuery, User.class),
+							chunk.get(chunk.size() - 1).getId());
+					chunk.clear();
+				}
+			}
+		}
+	}
+
+	private void afterCursor(Query query, EmailCampaign campaign) {
+		if (campaign.getLastCursor() != null) {
+			query.addCriteria(Criteria.where("_id").gt(new ObjectId(campaign.getLastCursor())));
+		}
+		query.with(Sort.by(Direction.ASC, "_id"));
+	}
+
+	private void queueChunk(EmailCampaign campaign, List<User> users, String cursor) {
+		Locale locale = campaign.getLocale() == null ? Locale.ROOT : Locale.forLanguageTag(campaign.getLocale());
+		boolean tokenLink = this.emailLinks.hasTokenLink(campaign.getTemplate());
+
+		List<EmailMessage> emails = new ArrayList<>(users.size());
+		for (User user : users) {
+			Map<String, Object> model = campaign.getVariables() == null ? new HashMap<>(16)
+					: new HashMap<>(campaign.getVariables());
+			model.put("firstName", user.getFirstName());
+			model.put("lastName", user.getLastName());
+			model.put("email", user.getEmail());
+			model.put("uniqueId", user.getUniqueId());
+			model.put("baseUrl", this.emailLinks.getBaseUrl());
+			model.put("courseId", campaign.getCourseId());
+			if (tokenLink) {
+				model.put("link", this.emailLinks.tokenLink(campaign.getTemplate(), user.getUniqueId()));
+				model.put("expiryHours", EmailLinks.TOKEN_EXPIRY_HOURS);
+			}
+			RenderedEmail content = this.emailTemplateEngine.render(campaign.getTemplate(), locale, model);
+
+			EmailMessage email = new EmailMessage();
+			email.setFrom(this.fromAddress);
+			email.setTo(user.getEmail());
+			email.setSubject(content.getSubject());
+			email.setText(content.getText());
+			email.setHtml(content.getHtml());
+			email.setCampaignId(campaign.getId());
+			email.setDedupeKey(campaign.getId() + ":" + user.getEmail());
+			// The link's expiry window starts when the dispatcher delivers it, not when it is queued
+			email.setRefreshTokenExpiry(tokenLink);
+			emails.add(email);
+		}
+
+		int queued = this.emailService.enqueueAll(emails);
+		campaign.setQueued(campaign.getQueued() + queued);
+		campaign.setLastCursor(cursor);
+
+		Update update = new Update();
+		update.set("lastCursor", cursor);
+		update.inc("queued", queued);
+		update.set("lockedUntil", new Date(System.currentTimeMillis() + this.leaseMs));
+		this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(campaign.getId())), update,
+				EmailCampaign.class);
+	}
+}
@@ -1,9 +1,9 @@
 package com.training.service.impl;
 
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
+import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -16,16 +16,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import com.mongodb.client.result.UpdateResult;
+import com.training.cache.CourseCatalogCache;
 import com.training.constants.TrainingConstants;
 import com.training.model.Course;
 import com.training.model.CreateCourseRequest;
 import com.training.model.UpdateCourseRequest;
-import com.training.model.UserCourseMapping;
+import com.training.recommendation.CourseRecommendationEngine;
 import com.training.service.CourseService;
 
 @Service
@@ -34,6 +37,12 @@ public class CourseServiceImpl implements CourseService {
 	@Autowired
 	private MongoTemplate mongoTemplate;
 
+	@Autowired
+	private CourseCatalogCache courseCatalogCache;
+
+	@Autowired
+	private CourseRecommendationEngine courseRecommendationEngine;
+
 	private static final Logger logger = LoggerFactory.getLogger(CourseServiceImpl.class);
 
 	@Override
@@ -51,19 +60,20 @@ public class CourseServiceImpl implements CourseService {
 		course.setStatus(TrainingConstants.ACTIVE);
 		logger.info("Saving course -{} into db", course.getCourseId());
 		this.mongoTemplate.save(course);
+		this.courseCatalogCache.rebuild();
 
 		return new ResponseEntity<>("Course successfully created", HttpStatus.OK);
 	}
 
 	@Override
 	public ResponseEntity<?> getCourses(String searchInput) {
-		logger.info("Querying get all active course in db....");
-		Query query = new Query();
+		logger.info("Querying get all active course from catalog....");
+		List<Course> courses = this.courseCatalogCache.getActiveCourses();
 		if (StringUtils.isNotEmpty(searchInput)) {
-			query = this.getSearchQuery(searchInput);
+			Pattern pattern = Pattern.compile(Pattern.quote(searchInput),
+					Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+			courses = courses.stream().filter(course -> this.matches(course, pattern)).collect(Collectors.toList());
 		}
-		query.addCriteria(Criteria.where("status").is(TrainingConstants.ACTIVE));
-		List<Course> courses = this.mongoTemplate.find(query, Course.class);
 		if (!CollectionUtils.isEmpty(courses)) {
 			return new ResponseEntity<>(courses, HttpStatus.OK);
 		} else {
@@ -75,9 +85,7 @@ public class CourseServiceImpl implements CourseService {
 	@Override
 	public ResponseEntity<?> getCourse(String courseId) {
 		logger.info("Querying info for courseId- {}", courseId);
-		Query query = new Query();
-		query.addCriteria(Criteria.where("courseId").is(courseId));
-		Course course = this.mongoTemplate.findOne(query, Course.class);
+		Course course = this.courseCatalogCache.getCourse(courseId);
 		if (course != null) {
 			return new ResponseEntity<>(course, HttpStatus.OK);
 		} else {
@@ -89,19 +97,14 @@ public class CourseServiceImpl implements CourseService {
 	@Override
 	public ResponseEntity<?> getMyCourses(String userId) {
 		logger.info("Getting all registered courses for user - {}", userId);
-		Query query = new Query();
-		query.addCriteria(Criteria.where(userId).is(userId));
-
-		List<UserCourseMapping> coursesList = this.mongoTemplate.find(query, UserCourseMapping.class);
-		if (CollectionUtils.isEmpty(coursesList)) {
+		Set<String> courses = this.courseRecommendationEngine.getEnrolledCourseIds(userId);
+		if (CollectionUtils.isEmpty(courses)) {
 			logger.info("User- {} is yet to register for a course", userId);
 			return new ResponseEntity<>(new ArrayList<>(), HttpStatus.OK);
 		} else {
-			Set<String> courses = coursesList.stream().map(UserCourseMapping::getCourseId).collect(Collectors.toSet());
-			Query courseQuery = new Query();
-			courseQuery.addCriteria(Criteria.where("courseId").in(courses));
-
-			List<Course> myCourses = this.mongoTemplate.find(courseQuery, Course.class);
+			CourseCatalogCache.Snapshot catalog = this.courseCatalogCache.getSnapshot();
+			List<Course> myCourses = courses.stream().map(catalog::getCourse).filter(Objects::nonNull)
+					.collect(Collectors.toList());
 			if (CollectionUtils.isEmpty(myCourses)) {
 				logger.info("Something might be breaking in code.");
 				return new ResponseEntity<>(new ArrayList<>(), HttpStatus.OK);
@@ -114,21 +117,7 @@ public class CourseServiceImpl implements CourseService {
 	@Override
 	public ResponseEntity<?> getRemainingCourses(String userId) {
 		logger.info("Getting all non registered courses for user - {}", userId);
-		Query query = new Query();
-		query.addCriteria(Criteria.where(userId).is(userId));
-
-		List<UserCourseMapping> coursesList = this.mongoTemplate.find(query, UserCourseMapping.class);
-		Set<String> myCourses = new LinkedHashSet<>();
-		if (CollectionUtils.isEmpty(coursesList)) {
-			logger.info("User- {} is yet to register for a course", userId);
-		} else {
-			myCourses = coursesList.stream().map(UserCourseMapping::getCourseId).collect(Collectors.toSet());
-		}
-		Query courseQuery = new Query();
-		if (!CollectionUtils.isEmpty(myCourses)) {
-			courseQuery.addCriteria(Criteria.where("courseId").nin(myCourses));
-		}
-		List<Course> recommendedCourses = this.mongoTemplate.find(courseQuery, Course.class);
+		List<Course> recommendedCourses = this.courseRecommendationEngine.recommend(userId);
 		if (CollectionUtils.isEmpty(recommendedCourses)) {
 			logger.info("User registered to all available courses so far");
 			return new ResponseEntity<>(new ArrayList<>(), HttpStatus.OK);
@@ -142,26 +131,38 @@ public class CourseServiceImpl implements CourseService {
 		logger.info("Updating course info for course - {}", request.getCourseId());
 		Query query = new Query();
 		query.addCriteria(Criteria.where("courseId").is(request.getCourseId()));
-		Course course = this.mongoTemplate.findOne(query, Course.class);
-		if (course != null) {
-			if (request.getName() != null) {
-				course.setName(request.getName());
-			}
-			if (request.getDescription() != null) {
-				course.setDescription(request.getDescription());
-			}
-			if (request.getPrice() != 0) {
-				course.setPrice(request.getPrice());
-			}
-			if (request.getMemberPrice() != 0) {
-				course.setMemberPrice(request.getMemberPrice());
-			}
-			if (request.getNonMemberPrice() != 0) {
-				course.setNonMemberPrice(request.getNonMemberPrice());
-			}
 
-			this.mongoTemplate.save(course);
+		// Only the fields present in the request are written
+		Update update = new Update();
+		if (request.getName() != null) {
+			update.set("name", request.getName());
+		}
+		if (request.getDescription() != null) {
+			update.set("description", request.getDescription());
+		}
+		if (request.getPrice() != 0) {
+			update.set("price", request.getPrice());
+		}
+		if (request.getMemberPrice() != 0) {
+			update.set("memberPrice", request.getMemberPrice());
+		}
+		if (request.getNonMemberPrice() != 0) {
+			update.set("nonMemberPrice", request.getNonMemberPrice());
+		}
+		update.set("lastModifiedDate", new Date());
+		update.inc("version", 1);
+
+		Query updateQuery = query;
+		if (request.getVersion() != null) {
+			updateQuery = Query.of(query).addCriteria(Criteria.where("version").is(request.getVersion()));
+		}
+		UpdateResult result = this.mongoTemplate.updateFirst(updateQuery, update, Course.class);
+		if (result.getMatchedCount() > 0) {
+			this.courseCatalogCache.rebuild();
 			return new ResponseEntity<>("Course is successfully updated", HttpStatus.OK);
+		} else if (request.getVersion() != null && this.mongoTemplate.exists(query, Course.class)) {
+			return new ResponseEntity<>("Course " + request.getCourseId() + " was modified by another request",
+					HttpStatus.CONFLICT);
 		} else {
 			return new ResponseEntity<>("No Course found with Id- " + request.getCourseId(), HttpStatus.NOT_FOUND);
 		}
@@ -172,36 +173,25 @@ public class CourseServiceImpl implements CourseService {
 		logger.info("Deleting course with id -{}", courseId);
 		Query query = new Query();
 		query.addCriteria(Criteria.where("courseId").is(courseId));
-		Course course = this.mongoTemplate.findOne(query, Course.class);
-		if (course != null) {
-			course.setStatus(TrainingConstants.DELETED);
-			this.mongoTemplate.save(course);
+		Update update = new Update();
+		update.set("status", TrainingConstants.DELETED);
+		update.set("lastModifiedDate", new Date());
+		update.inc("version", 1);
+		if (this.mongoTemplate.updateFirst(query, update, Course.class).getMatchedCount() > 0) {
+			this.courseCatalogCache.rebuild();
 			return new ResponseEntity<>("Course-  " + courseId + " is successfully deleted", HttpStatus.OK);
 		} else {
 			return new ResponseEntity<>("No Course found with Id-" + courseId, HttpStatus.NOT_FOUND);
 		}
 	}
 
-	private Query getSearchQuery(String searchInput) {
-		Query query = new Query();
-		List<Criteria> criterias = new LinkedList<>();
-		Criteria searchCriteria = new Criteria();
-		searchCriteria.orOperator(
-				Criteria.where("courseId")
-						.regex(Pattern.compile(searchInput, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
-				Criteria.where("name")
-						.regex(Pattern.compile(searchInput, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
-				Criteria.where("description")
-						.regex(Pattern.compile(searchInput, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
-				Criteria.where("status")
-						.regex(Pattern.compile(searchInput, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)));
-		criterias.add(searchCriteria);
-		if (!CollectionUtils.isEmpty(criterias)) {
-			Criteria criteria = new Criteria();
-			criteria.andOperator(criterias.stream().toArray(Criteria[]::new));
-			query.addCriteria(criteria);
-		}
-		return query;
+	private boolean matches(Course course, Pattern pattern) {
+		return this.find(pattern, course.getCourseId()) || this.find(pattern, course.getName())
+				|| this.find(pattern, course.getDescription()) || this.find(pattern, course.getStatus());
+	}
+
+	private boolean find(Pattern pattern, String value) {
+		return value != null && pattern.matcher(value).find();
 	}
 
 }
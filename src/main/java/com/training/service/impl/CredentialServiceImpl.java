@@ -0,0 +1,114 @@
+package com.training.service.impl;
+
+import java.util.List;
+
+import javax.crypto.SecretKey;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.training.constants.CollectionConstants;
+import com.training.model.KeyStorage;
+import com.training.model.User;
+import com.training.service.CredentialService;
+import com.training.utils.EncryptionUtils;
+import com.training.utils.PasswordHasher;
+
+@Service
+public class CredentialServiceImpl implements CredentialService {
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private EncryptionUtils encryptionUtils;
+
+	@Autowired
+	private List<PasswordHasher> passwordHashers;
+
+	@Value("${password.hash.algorithm:pbkdf2}")
+	private String algorithm;
+
+	private static final Logger logger = LoggerFactory.getLogger(CredentialServiceImpl.class);
+
+	@Override
+	public String encodePassword(String rawPassword) {
+		return this.getActiveHasher().hash(rawPassword);
+	}
+
+	@Override
+	public boolean verifyPassword(User user, String rawPassword) {
+		String storedPassword = user.getPassword();
+		if (StringUtils.isEmpty(storedPassword) || StringUtils.isEmpty(rawPassword)) {
+			return false;
+		}
+
+		PasswordHasher hasher = this.findHasher(storedPassword);
+		if (hasher == null) {
+			// Not a known hash format, so this is an AES password from before hashing
+			return this.verifyLegacyPassword(user, rawPassword);
+		}
+		if (!hasher.matches(rawPassword, storedPassword)) {
+			return false;
+		}
+		if (hasher != this.getActiveHasher() || hasher.needsRehash(storedPassword)) {
+			logger.info("Re-hashing password for user- {} with {}", user.getEmail(), this.algorithm);
+			this.storePassword(user, this.encodePassword(rawPassword));
+		}
+		return true;
+	}
+
+	private boolean verifyLegacyPassword(User user, String rawPassword) {
+		Query query = new Query();
+		query.addCriteria(Criteria.where("email").is(user.getEmail()));
+		KeyStorage keyStorage = this.mongoTemplate.findOne(query, KeyStorage.class, CollectionConstants.KEY_STORAGE);
+		if (keyStorage == null) {
+			logger.info("No legacy secret key found for user- {}", user.getEmail());
+			return false;
+		}
+
+		SecretKey secretKey = this.encryptionUtils.getSecretKey(keyStorage.getSecretKey());
+		String decryptedPassword = this.encryptionUtils.decrypt(user.getPassword(), secretKey);
+		if (!StringUtils.equalsIgnoreCase(decryptedPassword, rawPassword)) {
+			return false;
+		}
+
+		logger.info("Migrating legacy encrypted password for user- {}", user.getEmail());
+		this.storePassword(user, this.encodePassword(decryptedPassword));
+		this.mongoTemplate.remove(query, KeyStorage.class);
+		return true;
+	}
+
+	private void storePassword(User user, String encodedPassword) {
+		user.setPassword(encodedPassword);
+		Query query = new Query();
+		query.addCriteria(Criteria.where("email").is(user.getEmail()));
+		this.mongoTemplate.updateFirst(query, Update.update("password", encodedPassword), User.class);
+	}
+
+	private PasswordHasher findHasher(String encodedPassword) {
+		for (PasswordHasher hasher : this.passwordHashers) {
+			if (hasher.supports(encodedPassword)) {
+				return hasher;
+			}
+		}
+		return null;
+	}
+
+	private PasswordHasher getActiveHasher() {
+		for (PasswordHasher hasher : this.passwordHashers) {
+			if (hasher.getId().equalsIgnoreCase(this.algorithm)) {
+				return hasher;
+			}
+		}
+		throw new IllegalStateException("Unknown password hash algorithm: " + this.algorithm);
+	}
+}
@@ -0,0 +1,234 @@
+package com.training.service.impl;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.training.constants.TrainingConstants;
+import com.training.model.CreditsDetails;
+import com.training.model.User;
+import com.training.service.CreditLedgerService;
+import com.training.service.SummaryService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Service
+public class CreditLedgerServiceImpl implements CreditLedgerService {
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private SummaryService summaryService;
+
+	@Autowired
+	private ObjectProvider<MongoTransactionManager> transactionManagerProvider;
+
+	@Value("${credits.reconcile.batchSize:500}")
+	private int reconcileBatchSize;
+
+	@Value("${credits.reconcile.graceSeconds:300}")
+	private long reconcileGraceSeconds;
+
+	private final Counter corrections;
+
+	private TransactionTemplate transactionTemplate;
+
+	private static final Logger logger = LoggerFactory.getLogger(CreditLedgerServiceImpl.class);
+
+	public CreditLedgerServiceImpl(MeterRegistry meterRegistry) {
+		this.corrections = Counter.builder("credits.reconcile.corrections").register(meterRegistry);
+	}
+
+	@PostConstruct
+	public void init() {
+		MongoTransactionManager transactionManager = this.transactionManagerProvider.getIfAvailable();
+		if (transactionManager != null) {
+			this.transactionTemplate = new TransactionTemplate(transactionManager);
+		}
+	}
+
+	/**
+	 * Appends the event and moves the balance by its amount. Returns false
+	 * without touching the balance when an event for the same transactionId
+	 * was already recorded.
+	 * <p>
+	 * The event insert and the balance increment are two documents. With a
+	 * transaction manager configured they commit together (joining the
+	 * caller's transaction if there is one). Without one they are two writes,
+	 * and a crash between them leaves the balance off until
+	 * {@link #reconcileBalances()} corrects it from the event log.
+	 */
+	@Override
+	public boolean recordCreditEvent(CreditsDetails creditsDetails) {
+		if (creditsDetails.getCreatedAt() == null) {
+			creditsDetails.setCreatedAt(new Date());
+		}
+		try {
+			if (this.transactionTemplate != null) {
+				this.transactionTemplate.executeWithoutResult(status -> this.appendAndApply(creditsDetails));
+			} else {
+				this.appendAndApply(creditsDetails);
+			}
+		} catch (DuplicateKeyException e) {
+			logger.info("Credits for transaction {} already recorded", creditsDetails.getTransactionId());
+			return false;
+		}
+		// The summary upsert can fail on a duplicate key by design, which must not abort the transaction
+		this.afterCommit(() -> this.summaryService.recordCredit(creditsDetails));
+
+		logger.info("Recorded {} credits event of {} for user- {}", creditsDetails.getType(),
+				creditsDetails.getAmount(), creditsDetails.getUserId());
+		return true;
+	}
+
+	private void appendAndApply(CreditsDetails creditsDetails) {
+		this.mongoTemplate.insert(creditsDetails);
+
+		// The balance moves by the event amount instead of being recomputed from history
+		int delta = this.getSignedAmount(creditsDetails);
+		if (delta != 0) {
+			Query query = new Query();
+			query.addCriteria(Criteria.where("email").is(creditsDetails.getUserId()));
+			this.mongoTemplate.updateFirst(query, new Update().inc("credits", delta), User.class);
+		}
+	}
+
+	private void afterCommit(Runnable action) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					action.run();
+				}
+			});
+		} else {
+			action.run();
+		}
+	}
+
+	/**
+	 * Verifies every stored balance against the credit event log, one batch of
+	 * users per aggregation. Users with events newer than the grace period are
+	 * skipped so an event whose balance increment is still in flight is never
+	 * counted twice.
+	 */
+	@Override
+	@Scheduled(fixedDelayString = "${credits.reconcile.intervalMs:3600000}",
+			initialDelayString = "${credits.reconcile.initialDelayMs:600000}")
+	public void reconcileBalances() {
+		logger.info("Reconciling credit balances against the credits ledger...");
+		Date graceCutoff = new Date(
+				System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(this.reconcileGraceSeconds));
+		ObjectId lastId = null;
+		int checked = 0;
+		int corrected = 0;
+
+		while (true) {
+			Query query = new Query();
+			if (lastId != null) {
+				query.addCriteria(Criteria.where("_id").gt(lastId));
+			}
+			query.fields().include("email").include("credits");
+			query.with(Sort.by(Direction.ASC, "_id")).limit(this.reconcileBatchSize);
+			List<User> users = this.mongoTemplate.find(query, User.class);
+			if (users.isEmpty()) {
+				break;
+			}
+			lastId = new ObjectId(users.get(users.size() - 1).getId());
+
+			Map<String, Balance> balances = this.getBalances(
+					users.stream().map(User::getEmail).collect(Collectors.toList()));
+			for (User user : users) {
+				Balance balance = balances.get(user.getEmail());
+				if (balance != null && balance.lastEventAt != null && balance.lastEventAt.after(graceCutoff)) {
+					continue;
+				}
+				int expected = balance == null ? 0 : balance.amount;
+				if (expected != user.getCredits()) {
+					// Only overwrite the balance we compared against
+					Query update = new Query();
+					update.addCriteria(Criteria.where("_id").is(new ObjectId(user.getId())));
+					update.addCriteria(Criteria.where("credits").is(user.getCredits()));
+					if (this.mongoTemplate.updateFirst(update, Update.update("credits", expected), User.class)
+							.getModifiedCount() > 0) {
+						logger.warn("Corrected credits for user- {} from {} to {}", user.getEmail(),
+								user.getCredits(), expected);
+						this.corrections.increment();
+						corrected++;
+					}
+				}
+			}
+			checked += users.size();
+		}
+		logger.info("Credit reconciliation checked {} users, corrected {}", checked, corrected);
+	}
+
+	private Map<String, Balance> getBalances(Collection<String> userIds) {
+		AggregationExpression signedAmount = ConditionalOperators
+				.when(Criteria.where("type").is(TrainingConstants.ADD)).thenValueOf("amount")
+				.otherwiseValueOf(ConditionalOperators.when(Criteria.where("type").is(TrainingConstants.USE))
+						.thenValueOf(ArithmeticOperators.valueOf("amount").multiplyBy(-1)).otherwise(0));
+		Aggregation aggregation = Aggregation.newAggregation(Aggregation.match(Criteria.where("userId").in(userIds)),
+				Aggregation.group("userId").sum(signedAmount).as("balance").max("createdAt").as("lastEventAt"));
+
+		Map<String, Balance> balances = new HashMap<>();
+		for (Document result : this.mongoTemplate.aggregate(aggregation, CreditsDetails.class, Document.class)) {
+			Number amount = (Number) result.get("balance");
+			balances.put(result.getString("_id"),
+					new Balance(amount == null ? 0 : amount.intValue(), result.getDate("lastEventAt")));
+		}
+		return balances;
+	}
+
+	private int getSignedAmount(CreditsDetails creditsDetails) {
+		if (TrainingConstants.ADD.equals(creditsDetails.getType())) {
+			return creditsDetails.getAmount();
+		} else if (TrainingConstants.USE.equals(creditsDetails.getType())) {
+			return -creditsDetails.getAmount();
+		}
+		return 0;
+	}
+
+	private static class Balance {
+		private final int amount;
+		private final Date lastEventAt;
+
+		Balance(int amount, Date lastEventAt) {
+			this.amount = amount;
+			this.lastEventAt = lastEventAt;
+		}
+	}
+}
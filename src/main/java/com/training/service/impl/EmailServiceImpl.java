@@ -1,15 +1,56 @@
 package com.training.service.impl;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import com.training.constants.TrainingConstants;
+import com.training.model.EmailMessage;
+import com.training.model.RenderedEmail;
+import com.training.model.User;
 import com.training.service.EmailService;
+import com.training.template.EmailLinks;
+import com.training.utils.TokenBucket;
 
+import com.mongodb.bulk.BulkWriteError;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.mail.*;
+import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.Properties;
 
+/**
+ * Emails are written to an outbox collection and delivered by a scheduled
+ * dispatcher, so callers never wait on SMTP. The dispatcher claims a batch of
+ * due messages, sends them over one kept-alive {@link Transport} and
+ * reschedules failures with exponential backoff. A claim is a lease: messages
+ * left in SENDING by a crashed instance become due again once it expires.
+ */
 @Service
 public class EmailServiceImpl implements EmailService {
 
@@ -31,42 +72,319 @@ public class EmailServiceImpl implements EmailService {
     @Value("${mail.smtp.password}")
     private String smtpPassword;
 
-    @Override
-    public void send(String from, String to, String subject, String text, String cc, String bcc) {
+    @Value("${mail.outbox.batchSize:50}")
+    private int batchSize;
+
+    @Value("${mail.outbox.maxAttempts:5}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.initialBackoffMs:30000}")
+    private long initialBackoffMs;
+
+    @Value("${mail.outbox.maxBackoffMs:3600000}")
+    private long maxBackoffMs;
+
+    @Value("${mail.outbox.leaseMs:120000}")
+    private long leaseMs;
+
+    @Value("${mail.outbox.idleTimeoutMs:60000}")
+    private long idleTimeoutMs;
+
+    @Value("${mail.outbox.ratePerSecond:10}")
+    private double ratePerSecond;
+
+    @Value("${mail.outbox.burst:20}")
+    private int burst;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private EmailLinks emailLinks;
+
+    private Session session;
+
+    private Transport transport;
+
+    private long lastUsedAt;
+
+    private TokenBucket rateLimiter;
+
+    private final Counter sentCounter;
+
+    private final Counter retryCounter;
+
+    private final Counter failedCounter;
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailServiceImpl.class);
+
+    public EmailServiceImpl(MeterRegistry meterRegistry) {
+        this.sentCounter = Counter.builder("mail.outbox.sent").register(meterRegistry);
+        this.retryCounter = Counter.builder("mail.outbox.retries").register(meterRegistry);
+        this.failedCounter = Counter.builder("mail.outbox.failed").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
         Properties props = new Properties();
         props.put("mail.smtp.auth", smtpAuth);
         props.put("mail.smtp.starttls.enable", startTlsEnable);
         props.put("mail.smtp.host", smtpHost);
         props.put("mail.smtp.port", smtpPort);
 
-        Session session = Session.getInstance(props, new Authenticator() {
+        this.rateLimiter = new TokenBucket(this.ratePerSecond, this.burst);
+
+        this.session = Session.getInstance(props, new Authenticator() {
             @Override
             protected PasswordAuthentication getPasswordAuthentication() {
                 return new PasswordAuthentication(smtpUsername, smtpPassword);
             }
         });
+    }
 
+    @Override
+    public void send(String from, String to, String subject, String text, String cc, String bcc) {
+        EmailMessage email = new EmailMessage();
+        email.setFrom(from);
+        email.setTo(to);
+        email.setCc(cc);
+        email.setBcc(bcc);
+        email.setSubject(subject);
+        email.setText(text);
+        this.enqueue(email);
+    }
+
+    @Override
+    public void send(String from, String to, RenderedEmail content) {
+        EmailMessage email = new EmailMessage();
+        email.setFrom(from);
+        email.setTo(to);
+        email.setSubject(content.getSubject());
+        email.setText(content.getText());
+        email.setHtml(content.getHtml());
+        this.enqueue(email);
+    }
+
+    /**
+     * Queues a batch with one unordered bulk insert. Messages whose dedupeKey
+     * is already in the outbox are skipped; returns the number newly queued.
+     */
+    @Override
+    public int enqueueAll(List<EmailMessage> emails) {
+        if (emails.isEmpty()) {
+            return 0;
+        }
+        Date now = new Date();
+        for (EmailMessage email : emails) {
+            email.setStatus(TrainingConstants.PENDING);
+            email.setCreatedAt(now);
+            email.setNextAttemptAt(now);
+        }
+        BulkOperations bulkOperations = this.mongoTemplate.bulkOps(BulkMode.UNORDERED, EmailMessage.class);
+        bulkOperations.insert(emails);
         try {
-            Message message = new MimeMessage(session);
-            message.setFrom(new InternetAddress(from));
-            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
+            return bulkOperations.execute().getInsertedCount();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+            return e.getResult().getInsertedCount();
+        }
+    }
+
+    private void enqueue(EmailMessage email) {
+        email.setStatus(TrainingConstants.PENDING);
+        email.setCreatedAt(new Date());
+        email.setNextAttemptAt(email.getCreatedAt());
+        this.mongoTemplate.insert(email);
+        logger.info("Queued email to {}", email.getTo());
+    }
+
+    @Scheduled(fixedDelayString = "${mail.outbox.pollIntervalMs:2000}")
+    public synchronized void dispatchPending() {
+        List<EmailMessage> batch = this.claimBatch();
+        if (batch.isEmpty()) {
+            this.closeIfIdle();
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            EmailMessage email = batch.get(i);
+            Transport connected;
+            try {
+                connected = this.getTransport();
+            } catch (MessagingException e) {
+                logger.error("Could not connect to SMTP server {}:{}", smtpHost, smtpPort, e);
+                for (EmailMessage pending : batch.subList(i, batch.size())) {
+                    this.retryLater(pending, e, false);
+                }
+                return;
+            }
+
+            // Keeps the send rate within the SMTP provider's limits without sleeping on the scheduler thread
+            if (!this.rateLimiter.tryAcquire()) {
+                for (EmailMessage pending : batch.subList(i, batch.size())) {
+                    this.release(pending);
+                }
+                break;
+            }
 
-            if (cc != null && !cc.isEmpty()) {
-                message.setRecipients(Message.RecipientType.CC, InternetAddress.parse(cc));
+            try {
+                MimeMessage message = this.toMimeMessage(email);
+                if (email.isRefreshTokenExpiry()) {
+                    this.refreshTokenExpiry(email.getTo());
+                }
+                connected.sendMessage(message, message.getAllRecipients());
+                this.markSent(email);
+            } catch (MessagingException e) {
+                logger.warn("Email {} to {} could not be sent. Error: {}", email.getId(), email.getTo(),
+                        e.getMessage());
+                this.retryLater(email, e, e instanceof AddressException);
             }
+        }
+        this.lastUsedAt = System.currentTimeMillis();
+    }
+
+    @PreDestroy
+    public synchronized void closeTransport() {
+        if (this.transport != null) {
+            try {
+                this.transport.close();
+            } catch (MessagingException e) {
+                logger.debug("Error closing SMTP connection", e);
+            }
+            this.transport = null;
+        }
+    }
+
+    /**
+     * Queued link emails can wait behind the rate limit or retry backoff for
+     * longer than the token lifetime, so the window starts at delivery.
+     */
+    private void refreshTokenExpiry(String to) {
+        this.mongoTemplate.updateFirst(new Query(Criteria.where("email").is(to)),
+                new Update().set("emailExpiry", this.emailLinks.tokenExpiry()), User.class);
+    }
+
+    private List<EmailMessage> claimBatch() {
+        List<EmailMessage> batch = new ArrayList<>();
+        Date now = new Date();
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("status").is(TrainingConstants.PENDING).and("nextAttemptAt").lte(now),
+                Criteria.where("status").is(TrainingConstants.SENDING).and("lockedUntil").lt(now)));
+        query.with(Sort.by(Direction.ASC, "nextAttemptAt"));
 
-            if (bcc != null && !bcc.isEmpty()) {
-                message.setRecipients(Message.RecipientType.BCC, InternetAddress.parse(bcc));
+        Update update = new Update();
+        update.set("status", TrainingConstants.SENDING);
+        update.set("lockedUntil", new Date(now.getTime() + this.leaseMs));
+        update.inc("attempts", 1);
+
+        // Only claim what the rate limiter allows right now; the rest waits for the next poll
+        int limit = Math.min(this.batchSize, this.rateLimiter.availablePermits());
+        while (batch.size() < limit) {
+            EmailMessage claimed = this.mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().returnNew(true), EmailMessage.class);
+            if (claimed == null) {
+                break;
             }
+            batch.add(claimed);
+        }
+        return batch;
+    }
+
+    private Transport getTransport() throws MessagingException {
+        if (this.transport == null || !this.transport.isConnected()) {
+            this.closeTransport();
+            Transport created = this.session.getTransport("smtp");
+            created.connect();
+            this.transport = created;
+        }
+        return this.transport;
+    }
 
-            message.setSubject(subject);
-            message.setText(text);
+    private void closeIfIdle() {
+        if (this.transport != null && System.currentTimeMillis() - this.lastUsedAt > this.idleTimeoutMs) {
+            this.closeTransport();
+        }
+    }
 
-            Transport.send(message);
-            System.out.println("Email sent successfully!");
+    private MimeMessage toMimeMessage(EmailMessage email) throws MessagingException {
+        MimeMessage message = new MimeMessage(this.session);
+        message.setFrom(new InternetAddress(email.getFrom()));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(email.getTo()));
+
+        if (email.getCc() != null && !email.getCc().isEmpty()) {
+            message.setRecipients(Message.RecipientType.CC, InternetAddress.parse(email.getCc()));
+        }
+
+        if (email.getBcc() != null && !email.getBcc().isEmpty()) {
+            message.setRecipients(Message.RecipientType.BCC, InternetAddress.parse(email.getBcc()));
+        }
+
+        message.setSubject(email.getSubject(), StandardCharsets.UTF_8.name());
+        if (email.getHtml() == null) {
+            message.setText(email.getText(), StandardCharsets.UTF_8.name());
+        } else if (email.getText() == null) {
+            message.setText(email.getHtml(), StandardCharsets.UTF_8.name(), "html");
+        } else {
+            // Clients pick the last alternative they can display, so HTML goes last
+            MimeMultipart alternatives = new MimeMultipart("alternative");
+            MimeBodyPart textPart = new MimeBodyPart();
+            textPart.setText(email.getText(), StandardCharsets.UTF_8.name());
+            alternatives.addBodyPart(textPart);
+            MimeBodyPart htmlPart = new MimeBodyPart();
+            htmlPart.setText(email.getHtml(), StandardCharsets.UTF_8.name(), "html");
+            alternatives.addBodyPart(htmlPart);
+            message.setContent(alternatives);
+        }
+        message.setSentDate(new Date());
+        // Transport.send does this implicitly; sendMessage on an open transport does not
+        message.saveChanges();
+        return message;
+    }
+
+    private void markSent(EmailMessage email) {
+        Update update = new Update();
+        update.set("status", TrainingConstants.SENT);
+        update.set("sentAt", new Date());
+        update.unset("lockedUntil");
+        update.unset("lastError");
+        this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(email.getId())), update,
+                EmailMessage.class);
+        this.sentCounter.increment();
+    }
+
+    // Hands a claimed message back without counting the claim as an attempt
+    private void release(EmailMessage email) {
+        Update update = new Update();
+        update.set("status", TrainingConstants.PENDING);
+        update.unset("lockedUntil");
+        update.inc("attempts", -1);
+        this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(email.getId())), update,
+                EmailMessage.class);
+    }
 
-        } catch (MessagingException e) {
-            System.err.println("Email could not be sent. Error: " + e.getMessage());
+    private void retryLater(EmailMessage email, Exception error, boolean permanent) {
+        Update update = new Update();
+        update.unset("lockedUntil");
+        update.set("lastError", error.getMessage());
+        if (permanent || email.getAttempts() >= this.maxAttempts) {
+            update.set("status", TrainingConstants.FAILED);
+            this.failedCounter.increment();
+            logger.error("Giving up on email {} to {} after {} attempts", email.getId(), email.getTo(),
+                    email.getAttempts());
+        } else {
+            long backoff = Math.min(this.maxBackoffMs,
+                    this.initialBackoffMs << Math.min(email.getAttempts() - 1, 20));
+            update.set("status", TrainingConstants.PENDING);
+            update.set("nextAttemptAt", new Date(System.currentTimeMillis() + backoff));
+            this.retryCounter.increment();
         }
+        this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(email.getId())), update,
+                EmailMessage.class);
     }
 }
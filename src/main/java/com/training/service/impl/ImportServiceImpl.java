@@ -0,0 +1,358 @@
+package com.training.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.training.cache.CourseCatalogCache;
+import com.training.config.AsyncConfig;
+import com.training.config.MongoIndexBootstrapper;
+import com.training.constants.TrainingConstants;
+import com.training.model.Course;
+import com.training.model.CreateCourseRequest;
+import com.training.model.CreateUserRequest;
+import com.training.model.CreditsDetails;
+import com.training.model.ImportError;
+import com.training.model.ImportReport;
+import com.training.model.User;
+import com.training.service.CredentialService;
+import com.training.service.CreditLedgerService;
+import com.training.service.ImportService;
+import com.training.service.ReferralService;
+import com.training.utils.RecordReader;
+import com.training.utils.SearchUtils;
+
+/**
+ * Streams import records, validates them one at a time and writes them in
+ * chunks of {@code import.chunkSize} with one unordered bulk insert each.
+ * Only the current chunk is held in memory. Rows rejected by validation or by
+ * a unique index are reported with their row number; the rest of the chunk
+ * is still written.
+ */
+@Service
+public class ImportServiceImpl implements ImportService {
+
+	private static final int DUPLICATE_KEY = 11000;
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private CredentialService credentialService;
+
+	@Autowired
+	private ReferralService referralService;
+
+	@Autowired
+	private CreditLedgerService creditLedgerService;
+
+	@Autowired
+	private CourseCatalogCache courseCatalogCache;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private MongoIndexBootstrapper mongoIndexBootstrapper;
+
+	@Autowired
+	@Qualifier(AsyncConfig.PASSWORD_HASH_EXECUTOR)
+	private Executor passwordHashExecutor;
+
+	@Value("${import.chunkSize:1000}")
+	private int chunkSize;
+
+	@Value("${import.maxErrors:1000}")
+	private int maxErrors;
+
+	@Value("${referral.amount}")
+	private int referralAmount;
+
+	private static final Logger logger = LoggerFactory.getLogger(ImportServiceImpl.class);
+
+	@Override
+	public ResponseEntity<?> importUsers(InputStream inputStream, String format) {
+		return this.importRecords(inputStream, format, CreateUserRequest.class, this::validateUser,
+				CreateUserRequest::getEmail, this::writeUsers);
+	}
+
+	@Override
+	public ResponseEntity<?> importCourses(InputStream inputStream, String format) {
+		ResponseEntity<?> response = this.importRecords(inputStream, format, CreateCourseRequest.class,
+				this::validateCourse, CreateCourseRequest::getCourseId, this::writeCourses);
+		ImportReport report = (ImportReport) response.getBody();
+		if (report != null && report.getImported() > 0) {
+			this.courseCatalogCache.rebuild();
+		}
+		return response;
+	}
+
+	private <T> ResponseEntity<?> importRecords(InputStream inputStream, String format, Class<T> type,
+			Function<T, String> validator, Function<T, String> keyOf, BiConsumer<List<Row<T>>, ImportReport> writer) {
+		ImportReport report = new ImportReport();
+		List<Row<T>> chunk = new ArrayList<>(this.chunkSize);
+		long start = System.currentTimeMillis();
+
+		try (RecordReader reader = new RecordReader(inputStream, format, this.objectMapper)) {
+			while (true) {
+				Map<String, Object> record;
+				try {
+					record = reader.next();
+				} catch (IllegalArgumentException e) {
+					report.setTotal(report.getTotal() + 1);
+					this.reject(report, reader.getRow(), null, e.getMessage());
+					continue;
+				}
+				if (record == null) {
+					break;
+				}
+				report.setTotal(report.getTotal() + 1);
+
+				T request;
+				try {
+					request = this.objectMapper.convertValue(record, type);
+				} catch (IllegalArgumentException e) {
+					this.reject(report, reader.getRow(), null, "Invalid field value");
+					continue;
+				}
+				String problem = validator.apply(request);
+				if (problem != null) {
+					this.reject(report, reader.getRow(), keyOf.apply(request), problem);
+					continue;
+				}
+
+				chunk.add(new Row<>(reader.getRow(), keyOf.apply(request), request));
+				if (chunk.size() == this.chunkSize) {
+					writer.accept(chunk, report);
+					chunk.clear();
+				}
+			}
+			if (!chunk.isEmpty()) {
+				writer.accept(chunk, report);
+			}
+		} catch (IOException e) {
+			logger.error("Import of {} aborted after {} rows", type.getSimpleName(), report.getTotal(), e);
+			return new ResponseEntity<>(report, HttpStatus.BAD_REQUEST);
+		}
+
+		logger.info("Imported {} of {} {} rows in {} ms", report.getImported(), report.getTotal(),
+				type.getSimpleName(), System.currentTimeMillis() - start);
+		return new ResponseEntity<>(report, HttpStatus.OK);
+	}
+
+	private void writeUsers(List<Row<CreateUserRequest>> chunk, ImportReport report) {
+		List<Row<CreateUserRequest>> rows = this.mongoIndexBootstrapper.hasUniqueIndex(User.class, "email") ? chunk
+				: this.withoutExistingEmails(chunk, report);
+		if (rows.isEmpty()) {
+			return;
+		}
+		List<String> referralIds = this.referralService.generateUniqueReferralIds(rows.size());
+
+		// Password hashing is deliberately slow, so the chunk is hashed in parallel on a CPU-sized pool
+		List<CompletableFuture<String>> passwords = rows.stream()
+				.map(row -> CompletableFuture.supplyAsync(
+						() -> this.credentialService.encodePassword(row.request.getPassword()),
+						this.passwordHashExecutor))
+				.collect(Collectors.toList());
+
+		Date now = new Date();
+		List<User> users = new ArrayList<>(rows.size());
+		for (int i = 0; i < rows.size(); i++) {
+			User user = new User();
+			BeanUtils.copyProperties(rows.get(i).request, user);
+			user.setPassword(passwords.get(i).join());
+			user.setRole(TrainingConstants.USER);
+			user.setUniqueId(UUID.randomUUID().toString());
+			user.setStatus(TrainingConstants.ACTIVE);
+			user.setReferralId(referralIds.get(i));
+			user.setSearchTokens(SearchUtils.tokenize(user.getFirstName(), user.getLastName(), user.getEmail(),
+					user.getCity(), user.getState(), user.getCountry(), user.getZipCode(), user.getPhone()));
+			user.setCreatedAt(now);
+			user.setVersion(0L);
+			users.add(user);
+		}
+
+		boolean[] failed = this.bulkInsert(users, User.class, rows, report, "Email already exists");
+		this.creditReferrers(rows, failed);
+	}
+
+	private void writeCourses(List<Row<CreateCourseRequest>> rows, ImportReport report) {
+		Date now = new Date();
+		List<Course> courses = new ArrayList<>(rows.size());
+		for (Row<CreateCourseRequest> row : rows) {
+			Course course = new Course();
+			BeanUtils.copyProperties(row.request, course);
+			course.setStatus(TrainingConstants.ACTIVE);
+			course.setCreatedAt(now);
+			course.setVersion(0L);
+			courses.add(course);
+		}
+		this.bulkInsert(courses, Course.class, rows, report, "Courses already exists");
+	}
+
+	private boolean[] bulkInsert(List<?> documents, Class<?> type, List<? extends Row<?>> rows, ImportReport report,
+			String duplicateMessage) {
+		boolean[] failed = new boolean[documents.size()];
+		BulkOperations bulkOperations = this.mongoTemplate.bulkOps(BulkMode.UNORDERED, type);
+		bulkOperations.insert(documents);
+		try {
+			bulkOperations.execute();
+		} catch (BulkOperationException e) {
+			for (BulkWriteError error : e.getErrors()) {
+				failed[error.getIndex()] = true;
+				Row<?> row = rows.get(error.getIndex());
+				this.reject(report, row.number, row.key,
+						error.getCode() == DUPLICATE_KEY ? duplicateMessage : error.getMessage());
+			}
+		}
+
+		int imported = 0;
+		for (boolean rowFailed : failed) {
+			if (!rowFailed) {
+				imported++;
+			}
+		}
+		report.setImported(report.getImported() + imported);
+		return failed;
+	}
+
+	// Used until the unique email index is confirmed: one lookup for the chunk plus duplicates within it
+	private List<Row<CreateUserRequest>> withoutExistingEmails(List<Row<CreateUserRequest>> rows,
+			ImportReport report) {
+		Query query = new Query();
+		query.addCriteria(Criteria.where("email")
+				.in(rows.stream().map(row -> row.request.getEmail()).collect(Collectors.toList())));
+		query.fields().include("email");
+		Set<String> seen = new HashSet<>();
+		for (User user : this.mongoTemplate.find(query, User.class)) {
+			seen.add(user.getEmail());
+		}
+
+		List<Row<CreateUserRequest>> accepted = new ArrayList<>(rows.size());
+		for (Row<CreateUserRequest> row : rows) {
+			if (seen.add(row.request.getEmail())) {
+				accepted.add(row);
+			} else {
+				this.reject(report, row.number, row.key, "Email already exists");
+			}
+		}
+		return accepted;
+	}
+
+	// Same referral credit as createUser, with one lookup for all referrers in the chunk
+	private void creditReferrers(List<Row<CreateUserRequest>> rows, boolean[] failed) {
+		List<String> referredBy = new ArrayList<>();
+		for (int i = 0; i < rows.size(); i++) {
+			if (!failed[i] && StringUtils.isNotEmpty(rows.get(i).request.getReferredBy())) {
+				referredBy.add(rows.get(i).request.getReferredBy());
+			}
+		}
+		if (referredBy.isEmpty()) {
+			return;
+		}
+
+		Query query = new Query();
+		query.addCriteria(Criteria.where("referralId").in(referredBy));
+		query.fields().include("email").include("referralId");
+		Map<String, String> referrers = new HashMap<>();
+		for (User referrer : this.mongoTemplate.find(query, User.class)) {
+			referrers.put(referrer.getReferralId(), referrer.getEmail());
+		}
+
+		Date now = new Date();
+		for (String referralId : referredBy) {
+			String email = referrers.get(referralId);
+			if (email == null) {
+				logger.info("Invalid referral code used- {}", referralId);
+				continue;
+			}
+			CreditsDetails creditsDetails = new CreditsDetails();
+			creditsDetails.setAmount(this.referralAmount);
+			creditsDetails.setType(TrainingConstants.ADD);
+			creditsDetails.setUserId(email);
+			creditsDetails.setTransactionDate(now);
+			this.creditLedgerService.recordCreditEvent(creditsDetails);
+		}
+	}
+
+	private String validateUser(CreateUserRequest request) {
+		if (StringUtils.isEmpty(request.getEmail()) || !request.getEmail().contains("@")) {
+			return "A valid email is required";
+		}
+		if (StringUtils.isEmpty(request.getFirstName())) {
+			return "firstName is required";
+		}
+		if (StringUtils.isEmpty(request.getPassword())) {
+			return "password is required";
+		}
+		return null;
+	}
+
+	private String validateCourse(CreateCourseRequest request) {
+		if (StringUtils.isEmpty(request.getCourseId())) {
+			return "courseId is required";
+		}
+		if (StringUtils.isEmpty(request.getName())) {
+			return "name is required";
+		}
+		if (request.getPrice() < 0 || request.getMemberPrice() < 0 || request.getNonMemberPrice() < 0) {
+			return "Prices cannot be negative";
+		}
+		return null;
+	}
+
+	private void reject(ImportReport report, int row, String key, String message) {
+		report.setFailed(report.getFailed() + 1);
+		if (report.getErrors().size() < this.maxErrors) {
+			report.getErrors().add(new ImportError(row, key, message));
+		} else {
+			report.setErrorsTruncated(true);
+		}
+	}
+
+	private static final class Row<T> {
+
+		private final int number;
+
+		private final String key;
+
+		private final T request;
+
+		Row(int number, String key, T request) {
+			this.number = number;
+			this.key = key;
+			this.request = request;
+		}
+	}
+}
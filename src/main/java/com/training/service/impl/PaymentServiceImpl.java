@@ -1,26 +1,57 @@
 package com.training.service.impl;
 
+import com.training.config.AsyncConfig;
+import com.training.constants.TrainingConstants;
+import com.training.cache.CourseCatalogCache;
 import com.training.model.ApiResponse;
+import com.training.model.Course;
+import com.training.model.CreatePaymentRequest;
+import com.training.model.PaymentCallbackRequest;
+import com.training.model.PaymentOrder;
 import com.training.model.PaymentRequest;
 import com.training.model.PaymentUrlResponse;
+import com.training.model.User;
 import com.training.service.PaymentService;
+import com.training.service.TransactionService;
+import com.training.utils.TransactionIdGenerator;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.text.SimpleDateFormat;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import okhttp3.*;
@@ -48,33 +79,384 @@ public class PaymentServiceImpl implements PaymentService {
 
 	private static final Logger logger = LoggerFactory.getLogger(PaymentServiceImpl.class);
 
-	private static final OkHttpClient httpClient = new OkHttpClient();
+	private static final MediaType JSON = MediaType.get("application/json");
+
+	// Anything else but PAYMENT_SUCCESS (e.g. PAYMENT_PENDING) may still complete, so the order stays PENDING
+	private static final Set<String> TERMINAL_FAILURE_CODES = new HashSet<>(Arrays
+			.asList(TrainingConstants.PAYMENT_ERROR, TrainingConstants.PAYMENT_DECLINED, TrainingConstants.TIMED_OUT));
+
+	@Autowired
+	private OkHttpClient httpClient;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private TransactionService transactionService;
+
+	@Autowired
+	private TransactionIdGenerator transactionIdGenerator;
+
+	@Autowired
+	private CourseCatalogCache courseCatalogCache;
+
+	@Autowired
+	@Qualifier(AsyncConfig.TASK_EXECUTOR)
+	private Executor taskExecutor;
+
+	@Value("${payments.settlement.leaseMs:120000}")
+	private long settlementLeaseMs;
+
+	@Value("${payments.settlement.maxAttempts:5}")
+	private int settlementMaxAttempts;
+
+	@Value("${payments.settlement.initialBackoffMs:60000}")
+	private long settlementInitialBackoffMs;
+
+	@Value("${payments.settlement.maxBackoffMs:3600000}")
+	private long settlementMaxBackoffMs;
+
+	@Value("${payments.settlement.sweepBatchSize:50}")
+	private int settlementSweepBatchSize;
+
+	// 0 means membership can't be bought online
+	@Value("${payments.membership.price:0}")
+	private int membershipPrice;
+
+	private final Cache<String, Boolean> recentCallbacks;
+
+	public PaymentServiceImpl(@Value("${payments.callback.recentIds.maxSize:100000}") long recentIdsMaxSize,
+			@Value("${payments.callback.recentIds.ttlSeconds:3600}") long recentIdsTtlSeconds) {
+		this.recentCallbacks = Caffeine.newBuilder().maximumSize(recentIdsMaxSize)
+				.expireAfterWrite(recentIdsTtlSeconds, TimeUnit.SECONDS).build();
+	}
 
 	@Override
 	public ResponseEntity<?> initiatePayment(PaymentRequest paymentRequest) {
 		try {
-			String payload = createBase64EncodedPayload(paymentRequest);
+			PaymentOrder order = this.createPaymentOrder(paymentRequest);
+			String payload = createBase64EncodedPayload(paymentRequest, order);
 			logger.info("Base64 payload- {}", payload);
 			String checksum = calculateChecksum(payload);
 			ApiResponse response = makePaymentApiRequest(payload, checksum);
-			String url = response.getData().getInstrumentResponse().getRedirectInfo().getUrl();
-			return ResponseEntity.ok(new PaymentUrlResponse(url, "Payment initiated successfully"));
+			return this.toPaymentUrlResponse(response, order.getMerchantTransactionId());
+		} catch (IllegalArgumentException e) {
+			return this.paymentRejected(e);
+		} catch (Exception e) {
+			return this.paymentFailure(e);
+		}
+	}
+
+	/**
+	 * Same as {@link #initiatePayment(PaymentRequest)} but the gateway call is
+	 * queued on the HTTP client's dispatcher, so the calling thread is released
+	 * while the gateway responds.
+	 */
+	@Override
+	public CompletableFuture<ResponseEntity<?>> initiatePaymentAsync(PaymentRequest paymentRequest) {
+		CompletableFuture<ResponseEntity<?>> result = new CompletableFuture<>();
+		String merchantTransactionId;
+		Request request;
+		try {
+			PaymentOrder order = this.createPaymentOrder(paymentRequest);
+			merchantTransactionId = order.getMerchantTransactionId();
+			String payload = createBase64EncodedPayload(paymentRequest, order);
+			logger.info("Base64 payload- {}", payload);
+			request = this.buildPaymentApiRequest(payload, calculateChecksum(payload));
+		} catch (IllegalArgumentException e) {
+			result.complete(this.paymentRejected(e));
+			return result;
 		} catch (Exception e) {
-			logger.error("Error occurred while initiating payment.", e);
-			String errorMessage = "Failed to initiate payment.";
-			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-					.body(new PaymentUrlResponse("", errorMessage));
+			result.complete(this.paymentFailure(e));
+			return result;
+		}
+
+		this.httpClient.newCall(request).enqueue(new Callback() {
+			@Override
+			public void onResponse(Call call, Response response) {
+				try {
+					result.complete(toPaymentUrlResponse(readPaymentApiResponse(response), merchantTransactionId));
+				} catch (Exception e) {
+					result.complete(paymentFailure(e));
+				}
+			}
+
+			@Override
+			public void onFailure(Call call, IOException e) {
+				result.complete(paymentFailure(e));
+			}
+		});
+		return result;
+	}
+
+	private ResponseEntity<?> toPaymentUrlResponse(ApiResponse response, String merchantTransactionId) {
+		String url = response.getData().getInstrumentResponse().getRedirectInfo().getUrl();
+		return ResponseEntity.ok(new PaymentUrlResponse(url, "Payment initiated successfully", merchantTransactionId));
+	}
+
+	/**
+	 * Records the order the gateway callback will be settled against. The
+	 * payer is the authenticated user and the amount is priced here from the
+	 * catalog, less the credits being redeemed; the client's userId and amount
+	 * are ignored, so a callback can only ever settle what was actually charged.
+	 */
+	private PaymentOrder createPaymentOrder(PaymentRequest paymentRequest) {
+		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (authentication == null || StringUtils.isEmpty(authentication.getName())) {
+			throw new IllegalArgumentException("Payment requires an authenticated user");
+		}
+		Query userQuery = Query.query(Criteria.where("email").is(authentication.getName()));
+		userQuery.fields().include("email").include("member").include("credits");
+		User user = this.mongoTemplate.findOne(userQuery, User.class);
+		if (user == null) {
+			throw new IllegalArgumentException("No user found for " + authentication.getName());
+		}
+
+		int price;
+		if (paymentRequest.isMembershipTransaction()) {
+			if (this.membershipPrice <= 0) {
+				throw new IllegalArgumentException("Membership can't be purchased online");
+			}
+			price = this.membershipPrice;
+		} else {
+			Course course = this.courseCatalogCache.getCourse(paymentRequest.getCourseId());
+			if (course == null || !TrainingConstants.ACTIVE.equals(course.getStatus())) {
+				throw new IllegalArgumentException("No active course found with Id- " + paymentRequest.getCourseId());
+			}
+			price = this.getPrice(course, user.isMember());
+		}
+
+		int creditsUsed = paymentRequest.getCreditsUsed();
+		if (creditsUsed < 0 || creditsUsed > user.getCredits()) {
+			throw new IllegalArgumentException(
+					"Cannot use " + creditsUsed + " credits; balance is " + user.getCredits());
+		}
+		if (creditsUsed >= price) {
+			throw new IllegalArgumentException("Credits used must be less than the price of " + price);
+		}
+
+		PaymentOrder order = new PaymentOrder();
+		order.setMerchantTransactionId(this.transactionIdGenerator.nextIdString());
+		order.setUserId(user.getEmail());
+		order.setCourseId(paymentRequest.isMembershipTransaction() ? null : paymentRequest.getCourseId());
+		order.setAmount(price - creditsUsed);
+		order.setCreditsUsed(creditsUsed);
+		order.setMembershipTransaction(paymentRequest.isMembershipTransaction());
+		order.setStatus(TrainingConstants.PENDING);
+		order.setCreatedAt(new Date());
+		this.mongoTemplate.insert(order);
+		return order;
+	}
+
+	private int getPrice(Course course, boolean member) {
+		int tierPrice = member ? course.getMemberPrice() : course.getNonMemberPrice();
+		return tierPrice > 0 ? tierPrice : course.getPrice();
+	}
+
+	/**
+	 * Accepts the gateway's payment status callback. Only the checksum, a
+	 * recent-ID lookup and one atomic state change happen on the request
+	 * thread; settlement is handed to the async executor. The PENDING to
+	 * RECEIVED/FAILED transition on the uniquely indexed order is what makes
+	 * repeated callbacks harmless. Non-terminal codes only record the code and
+	 * leave the order PENDING for the final callback, and the in-memory filter
+	 * only remembers orders this instance has seen reach a final state.
+	 */
+	@Override
+	public ResponseEntity<?> handleCallback(String checksum, PaymentCallbackRequest callback) {
+		if (callback == null || StringUtils.isEmpty(callback.getResponse())
+				|| !this.isValidCallbackChecksum(callback.getResponse(), checksum)) {
+			logger.warn("Rejected payment callback with invalid checksum");
+			return new ResponseEntity<>("Invalid checksum", HttpStatus.UNAUTHORIZED);
+		}
+
+		JsonNode status;
+		try {
+			status = this.objectMapper.readTree(Base64.getDecoder().decode(callback.getResponse()));
+		} catch (IllegalArgumentException | IOException e) {
+			logger.warn("Rejected malformed payment callback", e);
+			return new ResponseEntity<>("Malformed callback", HttpStatus.BAD_REQUEST);
+		}
+		JsonNode data = status.path("data");
+		String merchantTransactionId = data.path("merchantTransactionId").asText(null);
+		if (merchantTransactionId == null) {
+			return new ResponseEntity<>("Malformed callback", HttpStatus.BAD_REQUEST);
+		}
+
+		if (this.recentCallbacks.getIfPresent(merchantTransactionId) != null) {
+			logger.info("Duplicate callback for {} ignored", merchantTransactionId);
+			return new ResponseEntity<>("Callback already processed", HttpStatus.OK);
+		}
+
+		String code = status.path("code").asText();
+		boolean success = TrainingConstants.PAYMENT_SUCCESS.equals(code);
+		Query pending = Query.query(Criteria.where("merchantTransactionId").is(merchantTransactionId).and("status")
+				.is(TrainingConstants.PENDING));
+		Date now = new Date();
+		if (!success && !TERMINAL_FAILURE_CODES.contains(code)) {
+			Update update = new Update();
+			update.set("gatewayCode", code);
+			update.set("callbackReceivedAt", now);
+			this.mongoTemplate.updateFirst(pending, update, PaymentOrder.class);
+			logger.info("Payment {} not final yet at gateway (code {})", merchantTransactionId, code);
+			return new ResponseEntity<>("Callback accepted", HttpStatus.OK);
+		}
+
+		Update update = new Update();
+		update.set("status", success ? TrainingConstants.RECEIVED : TrainingConstants.FAILED);
+		update.set("gatewayCode", code);
+		update.set("gatewayTransactionId", data.path("transactionId").asText(null));
+		update.set("paymentMode", data.path("paymentInstrument").path("type").asText(null));
+		update.set("callbackReceivedAt", now);
+		if (success) {
+			update.set("lockedUntil", new Date(now.getTime() + this.settlementLeaseMs));
+			update.inc("settlementAttempts", 1);
+		}
+		PaymentOrder order = this.mongoTemplate.findAndModify(pending, update,
+				FindAndModifyOptions.options().returnNew(true), PaymentOrder.class);
+		// Only cached once the order is final, so a failed write still lets the gateway's retry through
+		this.recentCallbacks.put(merchantTransactionId, Boolean.TRUE);
+		if (order == null) {
+			logger.info("Callback for {} matched no pending order; already processed or unknown",
+					merchantTransactionId);
+			return new ResponseEntity<>("Callback already processed", HttpStatus.OK);
+		}
+
+		if (success) {
+			long paidPaise = data.path("amount").asLong(-1);
+			if (paidPaise != Math.round(order.getAmount() * 100)) {
+				this.markOrderFailed(order, "Amount mismatch: gateway reported " + paidPaise + " paise");
+			} else {
+				this.taskExecutor.execute(() -> this.settleOrder(order));
+			}
+		} else {
+			logger.info("Payment {} failed at gateway with code {}", merchantTransactionId, code);
+		}
+		return new ResponseEntity<>("Callback accepted", HttpStatus.OK);
+	}
+
+	/**
+	 * Retries settlement for orders whose callback was accepted but whose
+	 * settlement never finished, e.g. because the instance stopped or the
+	 * database write failed. A failed attempt keeps the order leased for an
+	 * exponential backoff, so the sweep doesn't pick it straight back up, and
+	 * each sweep claims at most a batch of orders.
+	 */
+	@Scheduled(fixedDelayString = "${payments.settlement.sweepIntervalMs:60000}")
+	public void settleStalledOrders() {
+		Date now = new Date();
+		Query query = new Query(Criteria.where("status").is(TrainingConstants.RECEIVED)
+				.orOperator(Criteria.where("lockedUntil").is(null), Criteria.where("lockedUntil").lt(now)));
+		Update update = new Update();
+		update.set("lockedUntil", new Date(now.getTime() + this.settlementLeaseMs));
+		update.inc("settlementAttempts", 1);
+		for (int claimed = 0; claimed < this.settlementSweepBatchSize; claimed++) {
+			PaymentOrder order = this.mongoTemplate.findAndModify(query, update,
+					FindAndModifyOptions.options().returnNew(true), PaymentOrder.class);
+			if (order == null) {
+				break;
+			}
+			logger.info("Retrying settlement of payment {} (attempt {})", order.getMerchantTransactionId(),
+					order.getSettlementAttempts());
+			this.settleOrder(order);
+		}
+	}
+
+	private void settleOrder(PaymentOrder order) {
+		if (StringUtils.isEmpty(order.getUserId())) {
+			this.markOrderFailed(order, "Order has no userId to settle against");
+			return;
+		}
+		try {
+			CreatePaymentRequest request = new CreatePaymentRequest();
+			request.setUserId(order.getUserId());
+			request.setCourseId(order.getCourseId());
+			request.setTransactionId(order.getMerchantTransactionId());
+			request.setTransactionDate(order.getCallbackReceivedAt());
+			request.setAmount((int) Math.round(order.getAmount()));
+			request.setCreditsUsed(order.getCreditsUsed());
+			request.setPaymentMode(order.getPaymentMode());
+			request.setMembershipTransaction(order.isMembershipTransaction());
+			ResponseEntity<?> response = this.transactionService.createUserCourseTransaction(request);
+			if (!response.getStatusCode().is2xxSuccessful()) {
+				throw new IllegalStateException("Settlement rejected: " + response.getBody());
+			}
+
+			Update update = new Update();
+			update.set("status", TrainingConstants.COMPLETED);
+			update.set("settledAt", new Date());
+			update.unset("lockedUntil");
+			update.unset("lastError");
+			this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(order.getId())), update,
+					PaymentOrder.class);
+			logger.info("Settled payment {} for user- {}", order.getMerchantTransactionId(), order.getUserId());
+		} catch (RuntimeException e) {
+			if (order.getSettlementAttempts() >= this.settlementMaxAttempts) {
+				this.markOrderFailed(order, "Gave up after " + order.getSettlementAttempts()
+						+ " settlement attempts: " + e.getMessage());
+				return;
+			}
+			long backoff = Math.min(this.settlementMaxBackoffMs,
+					this.settlementInitialBackoffMs << Math.min(Math.max(order.getSettlementAttempts() - 1, 0), 20));
+			logger.error("Failed to settle payment {}; retrying in {} ms", order.getMerchantTransactionId(), backoff,
+					e);
+			Update update = new Update();
+			update.set("lastError", e.getMessage());
+			// The lease doubles as the backoff, so the sweep skips the order until it lapses
+			update.set("lockedUntil", new Date(System.currentTimeMillis() + backoff));
+			this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(order.getId())), update,
+					PaymentOrder.class);
+		}
+	}
+
+	private void markOrderFailed(PaymentOrder order, String reason) {
+		logger.error("Payment {} not settled: {}", order.getMerchantTransactionId(), reason);
+		Update update = new Update();
+		update.set("status", TrainingConstants.FAILED);
+		update.set("lastError", reason);
+		update.unset("lockedUntil");
+		this.mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(order.getId())), update,
+				PaymentOrder.class);
+	}
+
+	private boolean isValidCallbackChecksum(String response, String checksum) {
+		if (checksum == null) {
+			return false;
 		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest((response + this.saltKey).getBytes(StandardCharsets.UTF_8));
+			String expected = bytesToHex(hash) + "###" + this.saltIndex;
+			// Constant-time comparison so the checksum can't be recovered byte by byte
+			return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+					checksum.trim().toLowerCase().getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private ResponseEntity<?> paymentRejected(IllegalArgumentException e) {
+		logger.warn("Payment request rejected: {}", e.getMessage());
+		return ResponseEntity.badRequest().body(new PaymentUrlResponse("", e.getMessage()));
+	}
+
+	private ResponseEntity<?> paymentFailure(Exception e) {
+		logger.error("Error occurred while initiating payment.", e);
+		String errorMessage = "Failed to initiate payment.";
+		return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new PaymentUrlResponse("", errorMessage));
 	}
 
-	private String createBase64EncodedPayload(PaymentRequest paymentRequest) throws Exception {
+	private String createBase64EncodedPayload(PaymentRequest paymentRequest, PaymentOrder order) throws Exception {
 		Map<String, Object> data = new HashMap<>();
 		data.put("merchantId", this.merchantId);
-		data.put("merchantTransactionId", this.generateUniqueTransactionId());
+		data.put("merchantTransactionId", order.getMerchantTransactionId());
 		data.put("merchantUserId", paymentRequest.getMerchantUserId());
 		data.put("redirectUrl", this.redirectUrl);
 		data.put("callbackUrl", this.callbackUrl);
-		data.put("amount", paymentRequest.getAmount() * 100);
+		data.put("amount", Math.round(order.getAmount() * 100));
 		data.put("redirectMode", "POST");
 		data.put("mobileNumber", paymentRequest.getMobileNumber());
 
@@ -83,7 +465,7 @@ public class PaymentServiceImpl implements PaymentService {
 
 		data.put("paymentInstrument", paymentInstrument);
 
-		String payload = new ObjectMapper().writeValueAsString(data);
+		String payload = this.objectMapper.writeValueAsString(data);
 		logger.info("payload- {}", payload);
 		return Base64.getEncoder().encodeToString(payload.getBytes());
 	}
@@ -96,26 +478,33 @@ public class PaymentServiceImpl implements PaymentService {
 	}
 
 	private ApiResponse makePaymentApiRequest(String payload, String checksum) throws Exception {
-		RequestBody requestBody = RequestBody.create(MediaType.get("application/json"),
-				"{\"request\":\"" + payload + "\"}");
+		Request request = this.buildPaymentApiRequest(payload, checksum);
+		return this.readPaymentApiResponse(this.httpClient.newCall(request).execute());
+	}
+
+	private Request buildPaymentApiRequest(String payload, String checksum) {
+		RequestBody requestBody = RequestBody.create(JSON, "{\"request\":\"" + payload + "\"}");
 
 		Request request = new Request.Builder().url(this.phonePeApiUrl).post(requestBody)
 				.addHeader("accept", "application/json").addHeader("Content-Type", "application/json")
 				.addHeader("X-VERIFY", checksum).build();
 
 		logger.info("Request body :{}", request.toString());
+		return request;
+	}
 
-		Response response = httpClient.newCall(request).execute();
-
-		if (response.isSuccessful()) {
-			logger.info("API Response: {}", response);
-			String responseBody = response.body().string();
-			return new ObjectMapper().readValue(responseBody, ApiResponse.class);
-		} else {
-			logger.error("Failed to make a new payment. HTTP Status: {}, Response Body: {}", response.code(),
-					response.body().string());
-			// throw new RuntimeException("Failed to make a new payment");
-			return new ApiResponse();
+	private ApiResponse readPaymentApiResponse(Response response) throws IOException {
+		// Closing the response hands the connection back to the pool
+		try (ResponseBody body = response.body()) {
+			if (response.isSuccessful()) {
+				logger.info("API Response: {}", response);
+				return this.objectMapper.readValue(body.byteStream(), ApiResponse.class);
+			} else {
+				logger.error("Failed to make a new payment. HTTP Status: {}, Response Body: {}", response.code(),
+						body.string());
+				// throw new RuntimeException("Failed to make a new payment");
+				return new ApiResponse();
+			}
 		}
 	}
 
@@ -130,28 +519,4 @@ public class PaymentServiceImpl implements PaymentService {
 		return hexString.toString();
 	}
 
-	private String generateUniqueTransactionId() {
-		// Generate a random component for the transactionId
-		String randomComponent = generateRandomComponent(10);
-
-		// Get the current date in the format YYYYMMDD
-		String currentDate = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
-
-		// Combine date and random component with an underscore
-		return currentDate + "_" + randomComponent;
-	}
-
-	private String generateRandomComponent(int length) {
-		// Generate a random alphanumeric string of the specified length
-		String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
-		Random random = new Random();
-		StringBuilder randomComponent = new StringBuilder(length);
-
-		for (int i = 0; i < length; i++) {
-			randomComponent.append(characters.charAt(random.nextInt(characters.length())));
-		}
-
-		return randomComponent.toString();
-	}
-
 }
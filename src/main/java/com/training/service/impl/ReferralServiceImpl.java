@@ -1,35 +1,265 @@
 package com.training.service.impl;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import com.mongodb.bulk.BulkWriteError;
+import com.training.config.AsyncConfig;
+import com.training.model.ReferralCode;
 import com.training.model.User;
 import com.training.service.ReferralService;
+import com.training.utils.BloomFilter;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Hands out referral codes from an in-memory pool of codes already reserved in
+ * the referral_codes collection, so signup does not touch the database for
+ * one. The pool is topped up in the background: random candidates are first
+ * screened against a Bloom filter of every code issued so far (loaded from
+ * users and referral_codes at startup), then reserved with one unordered bulk
+ * insert. Candidates that another instance reserved in the meantime fail on
+ * the _id index and are simply dropped.
+ */
 @Service
 public class ReferralServiceImpl implements ReferralService {
 
 	private static final String CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
 	private static final int ID_LENGTH = 7;
+	private static final int DUPLICATE_KEY = 11000;
 	private static SecureRandom random = new SecureRandom();
 
+	private static final Logger logger = LoggerFactory.getLogger(ReferralServiceImpl.class);
+
 	@Autowired
 	private MongoTemplate mongoTemplate;
 
+	@Autowired
+	@Qualifier(AsyncConfig.TASK_EXECUTOR)
+	private Executor taskExecutor;
+
+	@Value("${referral.pool.size:1000}")
+	private int poolSize;
+
+	@Value("${referral.pool.lowWatermark:200}")
+	private int lowWatermark;
+
+	@Value("${referral.bloom.expectedInsertions:1000000}")
+	private long expectedInsertions;
+
+	@Value("${referral.bloom.falsePositiveProbability:0.001}")
+	private double falsePositiveProbability;
+
+	private final Queue<String> pool = new ConcurrentLinkedQueue<>();
+
+	// ConcurrentLinkedQueue.size() is O(n), so the pool size is tracked separately
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	private final AtomicBoolean refilling = new AtomicBoolean();
+
+	private volatile BloomFilter issuedCodes;
+
+	public ReferralServiceImpl(MeterRegistry meterRegistry) {
+		Gauge.builder("referral.pool.size", this.pooled, AtomicInteger::get).register(meterRegistry);
+	}
+
 	// Generate a unique referral ID
 	public String generateUniqueReferralId() {
-		String referralId;
+		String referralId = this.pool.poll();
+		if (referralId != null) {
+			if (this.pooled.decrementAndGet() < this.lowWatermark) {
+				this.triggerRefill();
+			}
+			return referralId;
+		}
+
+		// Pool not ready yet (startup) or drained by a burst: reserve one directly
+		this.triggerRefill();
 		do {
 			referralId = generateRandomId();
-		} while (!isReferralIdUnique(referralId));
+		} while (!this.reserve(referralId));
 		return referralId;
 	}
 
+	/**
+	 * Codes for a batch of new users: taken from the pool first, the rest
+	 * reserved with bulk inserts rather than one round trip per code.
+	 */
+	@Override
+	public List<String> generateUniqueReferralIds(int count) {
+		List<String> referralIds = new ArrayList<>(count);
+		String referralId;
+		while (referralIds.size() < count && (referralId = this.pool.poll()) != null) {
+			this.pooled.decrementAndGet();
+			referralIds.add(referralId);
+		}
+		if (referralIds.size() < count) {
+			if (this.issuedCodes != null) {
+				referralIds.addAll(this.reserveBatch(count - referralIds.size()));
+			} else {
+				while (referralIds.size() < count) {
+					referralIds.add(this.generateUniqueReferralId());
+				}
+			}
+		}
+		this.triggerRefill();
+		return referralIds;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void initialize() {
+		this.taskExecutor.execute(() -> {
+			try {
+				this.issuedCodes = this.loadIssuedCodes();
+				this.refill();
+			} catch (RuntimeException e) {
+				logger.error("Failed to initialise the referral code pool", e);
+			}
+		});
+	}
+
+	@Scheduled(fixedDelayString = "${referral.pool.refillIntervalMs:60000}")
+	public void scheduledRefill() {
+		if (this.pooled.get() < this.poolSize) {
+			this.triggerRefill();
+		}
+	}
+
+	private void triggerRefill() {
+		if (this.issuedCodes != null && !this.refilling.get()) {
+			this.taskExecutor.execute(this::refill);
+		}
+	}
+
+	private void refill() {
+		if (!this.refilling.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			int needed = this.poolSize - this.pooled.get();
+			if (needed > 0) {
+				List<String> reserved = this.reserveBatch(needed);
+				this.pool.addAll(reserved);
+				this.pooled.addAndGet(reserved.size());
+			}
+			logger.debug("Referral code pool refilled to {}", this.pooled.get());
+		} catch (RuntimeException e) {
+			logger.error("Failed to refill the referral code pool", e);
+		} finally {
+			this.refilling.set(false);
+		}
+	}
+
+	private List<String> reserveBatch(int count) {
+		BloomFilter filter = this.issuedCodes;
+		List<String> reserved = new ArrayList<>(count);
+		while (reserved.size() < count) {
+			int needed = count - reserved.size();
+			List<ReferralCode> candidates = new ArrayList<>(needed);
+			Date now = new Date();
+			while (candidates.size() < needed) {
+				String candidate = generateRandomId();
+				if (!filter.mightContain(candidate)) {
+					// Added up front: a candidate that fails to reserve was taken anyway
+					filter.put(candidate);
+					candidates.add(new ReferralCode(candidate, now));
+				}
+			}
+			reserved.addAll(this.reserveAll(candidates));
+		}
+		return reserved;
+	}
+
+	private List<String> reserveAll(List<ReferralCode> candidates) {
+		BulkOperations bulkOperations = this.mongoTemplate.bulkOps(BulkMode.UNORDERED, ReferralCode.class);
+		bulkOperations.insert(candidates);
+		List<String> reserved = new ArrayList<>(candidates.size());
+		boolean[] failed = new boolean[candidates.size()];
+		try {
+			bulkOperations.execute();
+		} catch (BulkOperationException e) {
+			for (BulkWriteError error : e.getErrors()) {
+				if (error.getCode() != DUPLICATE_KEY) {
+					throw e;
+				}
+				failed[error.getIndex()] = true;
+			}
+		}
+		for (int i = 0; i < candidates.size(); i++) {
+			if (!failed[i]) {
+				reserved.add(candidates.get(i).getCode());
+			}
+		}
+		return reserved;
+	}
+
+	private boolean reserve(String referralId) {
+		BloomFilter filter = this.issuedCodes;
+		if (filter != null) {
+			if (filter.mightContain(referralId)) {
+				return false;
+			}
+		} else if (!this.isReferralIdUnique(referralId)) {
+			// Issued codes not loaded yet: legacy user codes are only known to the users collection
+			return false;
+		}
+		try {
+			this.mongoTemplate.insert(new ReferralCode(referralId, new Date()));
+		} catch (DuplicateKeyException e) {
+			return false;
+		}
+		if (filter != null) {
+			filter.put(referralId);
+		}
+		return true;
+	}
+
+	private BloomFilter loadIssuedCodes() {
+		Query userQuery = new Query(Criteria.where("referralId").ne(null));
+		userQuery.fields().include("referralId");
+		long existing = this.mongoTemplate.count(userQuery, User.class)
+				+ this.mongoTemplate.estimatedCount(ReferralCode.class);
+		BloomFilter filter = new BloomFilter(Math.max(this.expectedInsertions, existing * 2),
+				this.falsePositiveProbability);
+
+		try (Stream<User> users = this.mongoTemplate.stream(userQuery, User.class)) {
+			users.forEach(user -> filter.put(user.getReferralId()));
+		}
+		Query codeQuery = new Query();
+		codeQuery.fields().include("_id");
+		try (Stream<ReferralCode> codes = this.mongoTemplate.stream(codeQuery, ReferralCode.class)) {
+			codes.forEach(code -> filter.put(code.getCode()));
+		}
+		logger.info("Loaded {} issued referral codes into the membership filter", existing);
+		return filter;
+	}
+
 	// Generate a random referral ID
 	private String generateRandomId() {
 		StringBuilder sb = new StringBuilder(ID_LENGTH);
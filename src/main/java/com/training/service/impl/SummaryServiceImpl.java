@@ -0,0 +1,231 @@
+package com.training.service.impl;
+
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.training.constants.TrainingConstants;
+import com.training.model.CreditsDetails;
+import com.training.model.PaymentDetails;
+import com.training.model.User;
+import com.training.model.UserTransactionSummary;
+import com.training.service.SummaryService;
+
+@Service
+public class SummaryServiceImpl implements SummaryService {
+
+	private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM")
+			.withZone(ZoneOffset.UTC);
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Value("${transactions.summary.materialized:false}")
+	private boolean materialized;
+
+	private static final Logger logger = LoggerFactory.getLogger(SummaryServiceImpl.class);
+
+	@Override
+	public UserTransactionSummary getSummary(String userId) {
+		UserTransactionSummary summary = null;
+		if (this.materialized) {
+			summary = this.mongoTemplate.findById(userId, UserTransactionSummary.class);
+			if (summary == null || !summary.isSeeded()) {
+				summary = this.seed(userId);
+			}
+		}
+		if (summary == null) {
+			summary = this.aggregateSummary(userId, null);
+		}
+		summary.setBalance(this.getBalance(userId));
+		return summary;
+	}
+
+	@Override
+	public void recordPayment(PaymentDetails paymentDetails) {
+		if (!this.materialized) {
+			return;
+		}
+		Update update = new Update();
+		update.inc("totalSpent", paymentDetails.getAmount());
+		if (StringUtils.isNotEmpty(paymentDetails.getCourseId())) {
+			update.inc("spendByCourse." + toKey(paymentDetails.getCourseId()), paymentDetails.getAmount());
+		}
+		if (paymentDetails.getPaymentDate() != null) {
+			update.inc("spendByMonth." + MONTH_FORMAT.format(paymentDetails.getPaymentDate().toInstant()),
+					paymentDetails.getAmount());
+		}
+		this.upsert(paymentDetails.getUserId(), paymentDetails.getCreatedAt(), update);
+	}
+
+	@Override
+	public void recordCredit(CreditsDetails creditsDetails) {
+		if (!this.materialized) {
+			return;
+		}
+		Update update = new Update();
+		if (TrainingConstants.ADD.equals(creditsDetails.getType())) {
+			update.inc("creditsEarned", creditsDetails.getAmount());
+		} else if (TrainingConstants.USE.equals(creditsDetails.getType())) {
+			update.inc("creditsUsed", creditsDetails.getAmount());
+		} else {
+			return;
+		}
+		this.upsert(creditsDetails.getUserId(), creditsDetails.getCreatedAt(), update);
+	}
+
+	private void upsert(String userId, Date createdAt, Update update) {
+		Date eventTime = createdAt == null ? new Date() : createdAt;
+		update.setOnInsert("userId", userId);
+		update.setOnInsert("trackingSince", eventTime);
+		update.set("lastUpdated", new Date());
+		Query query = Query.query(Criteria.where("_id").is(userId).and("trackingSince").lte(eventTime));
+		try {
+			this.mongoTemplate.upsert(query, update, UserTransactionSummary.class);
+		} catch (DuplicateKeyException e) {
+			// The summary tracks from a later point, so the seed aggregation covers this event
+		}
+	}
+
+	/**
+	 * Brings a user's stored summary up to date with the history recorded
+	 * before materialisation was enabled. The document's trackingSince is
+	 * fixed first (by the first event or by this upsert), then everything
+	 * created before it is aggregated and added exactly once. Concurrent
+	 * seeders both aggregate, but only the first one's totals are applied.
+	 */
+	private UserTransactionSummary seed(String userId) {
+		Query query = Query.query(Criteria.where("_id").is(userId));
+		// Documents written before seeding existed hold partial totals of unknown coverage
+		this.mongoTemplate.remove(Query.query(Criteria.where("_id").is(userId).and("trackingSince").exists(false)),
+				UserTransactionSummary.class);
+
+		Update start = new Update();
+		start.setOnInsert("userId", userId);
+		start.setOnInsert("trackingSince", new Date());
+		UserTransactionSummary tracked;
+		try {
+			tracked = this.mongoTemplate.findAndModify(query, start,
+					FindAndModifyOptions.options().upsert(true).returnNew(true), UserTransactionSummary.class);
+		} catch (DuplicateKeyException e) {
+			// Lost the insert race to a concurrent event; its document carries the tracking point
+			tracked = this.mongoTemplate.findById(userId, UserTransactionSummary.class);
+		}
+		if (tracked == null || tracked.isSeeded()) {
+			return tracked;
+		}
+
+		UserTransactionSummary history = this.aggregateSummary(userId, tracked.getTrackingSince());
+		Update update = new Update();
+		update.inc("totalSpent", history.getTotalSpent());
+		update.inc("creditsEarned", history.getCreditsEarned());
+		update.inc("creditsUsed", history.getCreditsUsed());
+		history.getSpendByCourse().forEach((key, total) -> update.inc("spendByCourse." + key, total));
+		history.getSpendByMonth().forEach((key, total) -> update.inc("spendByMonth." + key, total));
+		update.set("seeded", true);
+		update.set("lastUpdated", new Date());
+		UserTransactionSummary seeded = this.mongoTemplate.findAndModify(
+				Query.query(Criteria.where("_id").is(userId).and("seeded").ne(true)), update,
+				FindAndModifyOptions.options().returnNew(true), UserTransactionSummary.class);
+		if (seeded == null) {
+			// Another request seeded it first
+			return this.mongoTemplate.findById(userId, UserTransactionSummary.class);
+		}
+		logger.info("Seeded materialised transaction summary for user- {}", userId);
+		return seeded;
+	}
+
+	/**
+	 * Builds the summary with two aggregations, one over payments and one over
+	 * credits, so only the totals cross the wire.
+	 */
+	private UserTransactionSummary aggregateSummary(String userId, Date createdBefore) {
+		logger.info("Aggregating transaction summary for user- {}", userId);
+		UserTransactionSummary summary = new UserTransactionSummary();
+		summary.setId(userId);
+		summary.setUserId(userId);
+		summary.setSpendByCourse(new LinkedHashMap<>());
+		summary.setSpendByMonth(new LinkedHashMap<>());
+
+		Criteria match = Criteria.where("userId").is(userId);
+		if (createdBefore != null) {
+			// Legacy records without createdAt predate any tracking point
+			match.orOperator(Criteria.where("createdAt").lt(createdBefore), Criteria.where("createdAt").exists(false));
+		}
+		Aggregation payments = Aggregation.newAggregation(Aggregation.match(match),
+				Aggregation.facet(Aggregation.group().sum("amount").as("total")).as("totals")
+						.and(Aggregation.match(Criteria.where("courseId").ne(null)),
+								Aggregation.group("courseId").sum("amount").as("total"))
+						.as("byCourse")
+						.and(Aggregation.project("amount").and(DateOperators.dateOf("paymentDate").toString("%Y-%m"))
+								.as("month"), Aggregation.group("month").sum("amount").as("total"))
+						.as("byMonth"));
+		Document paymentResult = this.mongoTemplate.aggregate(payments, PaymentDetails.class, Document.class)
+				.getUniqueMappedResult();
+		if (paymentResult != null) {
+			List<Document> totals = paymentResult.getList("totals", Document.class);
+			summary.setTotalSpent(totals.isEmpty() ? 0 : toInt(totals.get(0).get("total")));
+			summary.setSpendByCourse(toMap(paymentResult.getList("byCourse", Document.class)));
+			summary.setSpendByMonth(toMap(paymentResult.getList("byMonth", Document.class)));
+		}
+
+		Aggregation credits = Aggregation.newAggregation(Aggregation.match(match),
+				Aggregation.group("type").sum("amount").as("total"));
+		for (Document result : this.mongoTemplate.aggregate(credits, CreditsDetails.class, Document.class)) {
+			if (TrainingConstants.ADD.equals(result.getString("_id"))) {
+				summary.setCreditsEarned(toInt(result.get("total")));
+			} else if (TrainingConstants.USE.equals(result.getString("_id"))) {
+				summary.setCreditsUsed(toInt(result.get("total")));
+			}
+		}
+		summary.setLastUpdated(new Date());
+		return summary;
+	}
+
+	private int getBalance(String userId) {
+		Query query = new Query();
+		query.addCriteria(Criteria.where("email").is(userId));
+		query.fields().include("credits");
+		User user = this.mongoTemplate.findOne(query, User.class);
+		return user == null ? 0 : user.getCredits();
+	}
+
+	private static Map<String, Integer> toMap(List<Document> buckets) {
+		Map<String, Integer> map = new LinkedHashMap<>();
+		for (Document bucket : buckets) {
+			Object key = bucket.get("_id");
+			if (key != null) {
+				map.put(toKey(key.toString()), toInt(bucket.get("total")));
+			}
+		}
+		return map;
+	}
+
+	// Mongo field names can't contain dots, and these keys are also used as sub-document fields
+	private static String toKey(String value) {
+		return value.replace('.', '_').replace('$', '_');
+	}
+
+	private static int toInt(Object value) {
+		return value == null ? 0 : ((Number) value).intValue();
+	}
+}
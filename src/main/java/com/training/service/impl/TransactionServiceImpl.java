@@ -5,18 +5,27 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
+import javax.annotation.PostConstruct;
+
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.MongoTransactionManager;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.CollectionUtils;
 
 import com.training.constants.TrainingConstants;
@@ -24,8 +33,13 @@ import com.training.model.CreatePaymentRequest;
 import com.training.model.CreditsDetails;
 import com.training.model.PaymentDetails;
 import com.training.model.UserCourseMapping;
+import com.training.recommendation.CourseRecommendationEngine;
+import com.training.service.CreditLedgerService;
+import com.training.service.SummaryService;
 import com.training.service.TransactionService;
-import com.training.service.UserService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @Service
 public class TransactionServiceImpl implements TransactionService {
@@ -34,27 +48,49 @@ public class TransactionServiceImpl implements TransactionService {
 	private MongoTemplate mongoTemplate;
 
 	@Autowired
-	private UserService userService;
+	private CreditLedgerService creditLedgerService;
+
+	@Autowired
+	private SummaryService summaryService;
+
+	@Autowired
+	private CourseRecommendationEngine courseRecommendationEngine;
+
+	@Autowired
+	private ObjectProvider<MongoTransactionManager> transactionManagerProvider;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private TransactionTemplate transactionTemplate;
 
 	private static final Logger logger = LoggerFactory.getLogger(TransactionServiceImpl.class);
 
+	@PostConstruct
+	public void init() {
+		MongoTransactionManager transactionManager = this.transactionManagerProvider.getIfAvailable();
+		if (transactionManager != null) {
+			this.transactionTemplate = new TransactionTemplate(transactionManager);
+			logger.info("Payment settlement runs in multi-document transactions");
+		}
+	}
+
+	/**
+	 * Settles a payment idempotently on its transactionId: the unique index on
+	 * PaymentDetails.transactionId turns a replay into a duplicate-key error.
+	 * With transactions enabled the payment record is written first and every
+	 * write commits or aborts together. Without them it is written last, as
+	 * the marker that all other (individually idempotent) writes are done, so
+	 * a retry after a partial failure completes the settlement; a replay after
+	 * the marker exists returns before any write, and the enrollment records
+	 * the transactionId that last renewed it so a partial retry can't renew it
+	 * twice. Only a duplicate on the payment record itself counts as a replay;
+	 * any other duplicate-key error fails the settlement so it is retried.
+	 */
 	@Override
 	public ResponseEntity<?> createUserCourseTransaction(CreatePaymentRequest request) {
 		logger.info("Received new payment.. create corresponding records in db- {}", request.getTransactionId());
 
-		if (!request.isMembershipTransaction()) {
-			logger.info("received payment for course -{} by user- {}", request.getCourseId(), request.getUserId());
-			UserCourseMapping userCourseMapping = new UserCourseMapping();
-			userCourseMapping.setCourseId(request.getCourseId());
-			userCourseMapping.setEnrollmentDate(new Date());
-			userCourseMapping.setUserId(request.getUserId());
-			userCourseMapping.setExpiryDate(this.getExpiryTime(userCourseMapping.getEnrollmentDate()));
-			userCourseMapping.setStatus(TrainingConstants.ACTIVE);
-			this.mongoTemplate.save(userCourseMapping);
-		} else {
-			logger.info("received payment for premium membership for user- {}", request.getUserId());
-		}
-
 		PaymentDetails paymentDetails = new PaymentDetails();
 		paymentDetails.setMembershipTransaction(request.isMembershipTransaction());
 		paymentDetails.setAmount(request.getAmount());
@@ -63,11 +99,88 @@ public class TransactionServiceImpl implements TransactionService {
 		paymentDetails.setPaymentDate(request.getTransactionDate());
 		paymentDetails.setPaymentMode(request.getPaymentMode());
 		paymentDetails.setTransactionId(request.getTransactionId());
-		if (StringUtils.isNotEmpty(request.getCourseId())) {
-			paymentDetails.setCourseId(request.getCourseId());
+		paymentDetails.setCourseId(StringUtils.isNotEmpty(request.getCourseId()) ? request.getCourseId() : null);
+
+		Timer.Sample sample = Timer.start(this.meterRegistry);
+		String outcome = "settled";
+		try {
+			boolean recorded = this.transactionTemplate != null ? this.settleInTransaction(paymentDetails, request)
+					: this.settle(paymentDetails, request);
+			if (!recorded) {
+				outcome = "duplicate";
+				logger.info("Payment {} was already settled", request.getTransactionId());
+				return new ResponseEntity<>("Payment details already recorded", HttpStatus.OK);
+			}
+		} catch (RuntimeException e) {
+			outcome = "error";
+			throw e;
+		} finally {
+			sample.stop(this.meterRegistry.timer("settlement.latency", "outcome", outcome));
+		}
+
+		this.summaryService.recordPayment(paymentDetails);
+		if (!request.isMembershipTransaction()) {
+			this.courseRecommendationEngine.invalidate(request.getUserId());
+		}
+		return new ResponseEntity<>("Payment details successfully recorded", HttpStatus.OK);
+	}
+
+	/**
+	 * Returns false if the payment was already recorded.
+	 */
+	private boolean settleInTransaction(PaymentDetails paymentDetails, CreatePaymentRequest request) {
+		AtomicBoolean inserted = new AtomicBoolean();
+		try {
+			this.transactionTemplate.executeWithoutResult(status -> {
+				this.mongoTemplate.insert(paymentDetails);
+				inserted.set(true);
+				this.recordEnrollmentAndCredits(request);
+			});
+			return true;
+		} catch (DuplicateKeyException e) {
+			if (inserted.get()) {
+				// Raised after the payment insert, so not a replay; the rolled-back settlement is retried
+				throw e;
+			}
+			return false;
 		}
+	}
 
-		this.mongoTemplate.save(paymentDetails);
+	/**
+	 * Returns false if the payment was already recorded.
+	 */
+	private boolean settle(PaymentDetails paymentDetails, CreatePaymentRequest request) {
+		// A replay of a settled payment stops here, before touching the enrollment
+		if (this.mongoTemplate.exists(Query.query(Criteria.where("transactionId").is(request.getTransactionId())),
+				PaymentDetails.class)) {
+			return false;
+		}
+		this.recordEnrollmentAndCredits(request);
+		try {
+			this.mongoTemplate.insert(paymentDetails);
+			return true;
+		} catch (DuplicateKeyException e) {
+			// A concurrent settlement of the same payment recorded it first
+			return false;
+		}
+	}
+
+	private void recordEnrollmentAndCredits(CreatePaymentRequest request) {
+		if (!request.isMembershipTransaction()) {
+			logger.info("received payment for course -{} by user- {}", request.getCourseId(), request.getUserId());
+			try {
+				this.recordEnrollment(request);
+			} catch (DuplicateKeyException e) {
+				// A transaction is already aborted by the error, so only a standalone write can be retried
+				if (TransactionSynchronizationManager.isActualTransactionActive()) {
+					throw e;
+				}
+				// Another settlement created the enrollment first; the retry renews it instead
+				this.recordEnrollment(request);
+			}
+		} else {
+			logger.info("received payment for premium membership for user- {}", request.getUserId());
+		}
 
 		if (request.getCreditsUsed() > 0) {
 			CreditsDetails creditsDetails = new CreditsDetails();
@@ -76,13 +189,36 @@ public class TransactionServiceImpl implements TransactionService {
 			creditsDetails.setTransactionDate(request.getTransactionDate());
 			creditsDetails.setUserId(request.getUserId());
 			creditsDetails.setType(TrainingConstants.USE);
-			this.mongoTemplate.save(creditsDetails);
-
-			this.userService.calculateRemainingCredits(request.getUserId());
-
+			creditsDetails.setTransactionId(request.getTransactionId());
+			this.creditLedgerService.recordCreditEvent(creditsDetails);
 		}
+	}
 
-		return new ResponseEntity<>("Payment details successfully recorded", HttpStatus.OK);
+	private void recordEnrollment(CreatePaymentRequest request) {
+		// A re-purchase renews the enrollment; a replay of the same transactionId must not
+		Date enrollmentDate = new Date();
+		Date expiryDate = this.getExpiryTime(enrollmentDate);
+		Query enrollment = Query.query(Criteria.where("userId").is(request.getUserId()).and("courseId")
+				.is(request.getCourseId()));
+		Update renew = new Update();
+		renew.set("enrollmentDate", enrollmentDate);
+		renew.set("expiryDate", expiryDate);
+		renew.set("status", TrainingConstants.ACTIVE);
+		renew.set("lastModifiedDate", enrollmentDate);
+		renew.set("lastTransactionId", request.getTransactionId());
+		if (this.mongoTemplate.updateFirst(Query.of(enrollment).addCriteria(
+				Criteria.where("lastTransactionId").ne(request.getTransactionId())), renew, UserCourseMapping.class)
+				.getMatchedCount() == 0) {
+			// Either no enrollment yet, or this transaction already applied: insert-only, never renew
+			Update insert = new Update();
+			insert.setOnInsert("enrollmentDate", enrollmentDate);
+			insert.setOnInsert("expiryDate", expiryDate);
+			insert.setOnInsert("status", TrainingConstants.ACTIVE);
+			insert.setOnInsert("lastModifiedDate", enrollmentDate);
+			insert.setOnInsert("lastTransactionId", request.getTransactionId());
+			insert.setOnInsert("createdAt", enrollmentDate);
+			this.mongoTemplate.upsert(enrollment, insert, UserCourseMapping.class);
+		}
 	}
 
 	private Date getExpiryTime(Date enrollmentDate) {
@@ -160,4 +296,10 @@ public class TransactionServiceImpl implements TransactionService {
 			return new ResponseEntity<>(new ArrayList<>(), HttpStatus.OK);
 		}
 	}
+
+	@Override
+	public ResponseEntity<?> getSummaryByUser(String userId) {
+		logger.info("Querying transaction summary for userId-{}", userId);
+		return new ResponseEntity<>(this.summaryService.getSummary(userId), HttpStatus.OK);
+	}
 }
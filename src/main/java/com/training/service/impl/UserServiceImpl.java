@@ -1,46 +1,69 @@
 package com.training.service.impl;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.regex.Pattern;
-
-import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.util.Base64Utils;
 import org.springframework.util.CollectionUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.cache.CredentialCache;
+import com.training.config.AsyncConfig;
+import com.training.config.MongoIndexBootstrapper;
 import com.training.constants.CollectionConstants;
 import com.training.constants.TrainingConstants;
 import com.training.model.CreateUserRequest;
 import com.training.model.CreditsDetails;
 import com.training.model.KeyStorage;
+import com.training.model.ParsedToken;
+import com.training.model.RenderedEmail;
 import com.training.model.User;
+import com.training.model.UserPage;
 import com.training.model.UpdateUserRequest;
+import com.training.model.UserSummary;
+import com.training.service.CredentialService;
+import com.training.service.CreditLedgerService;
 import com.training.service.EmailService;
 import com.training.service.ReferralService;
 import com.training.service.UserService;
-import com.training.utils.EncryptionUtils;
+import com.training.template.EmailLinks;
+import com.training.template.EmailTemplateEngine;
 import com.training.utils.JwtUtils;
+import com.training.utils.SearchUtils;
 
 @Service
 public class UserServiceImpl implements UserService {
@@ -49,7 +72,7 @@ public class UserServiceImpl implements UserService {
 	private MongoTemplate mongoTemplate;
 
 	@Autowired
-	private EncryptionUtils encryptionUtils;
+	private CredentialService credentialService;
 
 	@Autowired
 	private JwtUtils jwtUtils;
@@ -60,43 +83,83 @@ public class UserServiceImpl implements UserService {
 	@Autowired
 	private EmailService emailService;
 
+	@Autowired
+	private EmailTemplateEngine emailTemplateEngine;
+
+	@Autowired
+	private EmailLinks emailLinks;
+
+	@Autowired
+	private CredentialCache credentialCache;
+
+	@Autowired
+	private CreditLedgerService creditLedgerService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private MongoIndexBootstrapper mongoIndexBootstrapper;
+
+	@Autowired
+	@Qualifier(AsyncConfig.TASK_EXECUTOR)
+	private Executor taskExecutor;
+
 	@Value("${referral.amount}")
 	private int referralAmount;
 
+	@Value("${users.page.defaultSize:50}")
+	private int defaultPageSize;
+
+	@Value("${users.page.maxSize:500}")
+	private int maxPageSize;
+
+	@Value("${users.search.limit:100}")
+	private int searchLimit;
+
+	private static final int STREAM_BATCH_SIZE = 500;
+
+	private static final int MAX_UPDATE_ATTEMPTS = 3;
+
+	private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
 	private static final Logger logger = LoggerFactory.getLogger(UserServiceImpl.class);
 
+	@EventListener(ApplicationReadyEvent.class)
+	public void startSearchTokenBackfill() {
+		// Indexes declared on User (unique email, searchTokens) are created by MongoIndexBootstrapper
+		CompletableFuture.runAsync(this::backfillSearchTokens, this.taskExecutor).exceptionally(e -> {
+			logger.error("Failed to backfill user search tokens", e);
+			return null;
+		});
+	}
+
 	@Override
 	public ResponseEntity<?> createUser(CreateUserRequest request) {
 
 		logger.info("Inside create user...");
 
-		Query query = new Query();
-		query.addCriteria(Criteria.where("email").is(request.getEmail()));
-		if (this.mongoTemplate.count(query, User.class) > 0) {
+		// Until the unique email index is confirmed it cannot be relied on to reject duplicates
+		if (!this.mongoIndexBootstrapper.hasUniqueIndex(User.class, "email")
+				&& this.mongoTemplate.exists(new Query(Criteria.where("email").is(request.getEmail())), User.class)) {
 			return new ResponseEntity<>("Email already exists", HttpStatus.BAD_REQUEST);
 		}
 
 		User user = new User();
 		BeanUtils.copyProperties(request, user);
-		SecretKey secretKey = this.encryptionUtils.generateSecretKey();
-		String encryptedPassword = this.encryptionUtils.encrypt(request.getPassword(), secretKey);
-		user.setPassword(encryptedPassword);
+		user.setPassword(this.credentialService.encodePassword(request.getPassword()));
 		user.setRole(TrainingConstants.USER);
 		user.setUniqueId(UUID.randomUUID().toString());
 		user.setStatus(TrainingConstants.ACTIVE);
 		user.setReferralId(this.referralService.generateUniqueReferralId());
-
-		// storing secret key separately
-		KeyStorage keyStorage = new KeyStorage();
-		keyStorage.setEmail(request.getEmail());
-		byte[] secretKeyBytes = secretKey.getEncoded();
-		String encodedSecretKey = Base64Utils.encodeToString(secretKeyBytes);
-		keyStorage.setSecretKey(encodedSecretKey);
-		logger.info("Generated secret key for the user- {}", user.getEmail());
-		this.mongoTemplate.save(keyStorage);
+		user.setSearchTokens(getSearchTokens(user));
 
 		logger.info("Saving user -{} into db", user.getEmail());
-		this.mongoTemplate.save(user);
+		try {
+			this.mongoTemplate.insert(user);
+		} catch (DuplicateKeyException e) {
+			return new ResponseEntity<>("Email already exists", HttpStatus.BAD_REQUEST);
+		}
 
 		// Adding credits to the referrer
 		if (StringUtils.isNotEmpty(request.getReferredBy())) {
@@ -107,20 +170,70 @@ public class UserServiceImpl implements UserService {
 	}
 
 	@Override
-	public ResponseEntity<?> getUsers(String searchInput) {
+	public ResponseEntity<?> getUsers(String searchInput, String cursor, Integer pageSize) {
 		logger.info("Querying get all active users in db....");
+		Query query = this.getActiveUsersQuery(searchInput);
+
+		if (cursor == null && pageSize == null) {
+			List<UserSummary> customers = this.mongoTemplate.find(query, UserSummary.class, CollectionConstants.USERS);
+			if (!CollectionUtils.isEmpty(customers)) {
+				return new ResponseEntity<>(customers, HttpStatus.OK);
+			} else {
+				logger.info("No users found in users collection...");
+				return new ResponseEntity<>(new ArrayList<>(), HttpStatus.OK);
+			}
+		}
+
+		// Keyset pagination on _id: the cursor is the last _id of the previous page
+		if (StringUtils.isNotEmpty(cursor)) {
+			if (!ObjectId.isValid(cursor)) {
+				return new ResponseEntity<>("Invalid cursor", HttpStatus.BAD_REQUEST);
+			}
+			query.addCriteria(Criteria.where("_id").gt(new ObjectId(cursor)));
+		}
+		int limit = pageSize == null || pageSize <= 0 ? this.defaultPageSize : Math.min(pageSize, this.maxPageSize);
+		query.with(Sort.by(Direction.ASC, "_id")).limit(limit + 1);
+
+		List<UserSummary> customers = this.mongoTemplate.find(query, UserSummary.class, CollectionConstants.USERS);
+		String nextCursor = null;
+		if (customers.size() > limit) {
+			customers = customers.subList(0, limit);
+			nextCursor = customers.get(limit - 1).getId();
+		}
+		return new ResponseEntity<>(new UserPage(customers, nextCursor), HttpStatus.OK);
+	}
+
+	@Override
+	public ResponseEntity<StreamingResponseBody> streamUsers(String searchInput) {
+		logger.info("Streaming all active users in db....");
+		Query query = this.getActiveUsersQuery(searchInput);
+		query.with(Sort.by(Direction.ASC, "_id")).cursorBatchSize(STREAM_BATCH_SIZE);
+
+		// Users are written as newline-delimited JSON while the cursor is read
+		StreamingResponseBody body = outputStream -> {
+			try (Stream<UserSummary> users = this.mongoTemplate.stream(query, UserSummary.class,
+					CollectionConstants.USERS)) {
+				Iterator<UserSummary> iterator = users.iterator();
+				int written = 0;
+				while (iterator.hasNext()) {
+					outputStream.write(this.objectMapper.writeValueAsBytes(iterator.next()));
+					outputStream.write('\n');
+					if (++written % STREAM_BATCH_SIZE == 0) {
+						outputStream.flush();
+					}
+				}
+			}
+		};
+		return ResponseEntity.ok().contentType(NDJSON).body(body);
+	}
+
+	private Query getActiveUsersQuery(String searchInput) {
 		Query query = new Query();
 		if (StringUtils.isNotEmpty(searchInput)) {
 			query = this.getSearchQuery(searchInput);
 		}
 		query.addCriteria(Criteria.where("status").is(TrainingConstants.ACTIVE));
-		List<User> customers = this.mongoTemplate.find(query, User.class);
-		if (!CollectionUtils.isEmpty(customers)) {
-			return new ResponseEntity<>(customers, HttpStatus.OK);
-		} else {
-			logger.info("No users found in users collection...");
-			return new ResponseEntity<>(new ArrayList<>(), HttpStatus.OK);
-		}
+		return this.withSummaryFields(query);
 	}
 
 	@Override
@@ -128,66 +241,71 @@ public class UserServiceImpl implements UserService {
 		logger.info("Querying info for userId- {}", userId);
 		Query query = new Query();
 		query.addCriteria(Criteria.where("email").is(userId));
-		User user = this.mongoTemplate.findOne(query, User.class);
+		UserSummary user = this.mongoTemplate.findOne(this.withSummaryFields(query), UserSummary.class,
+				CollectionConstants.USERS);
 		if (user != null) {
 			return new ResponseEntity<>(user, HttpStatus.OK);
 		} else {
 			logger.info("No user found - {}", userId);
-			return new ResponseEntity<>(new User(), HttpStatus.OK);
+			return new ResponseEntity<>(new UserSummary(), HttpStatus.OK);
 		}
 	}
 
+	private Query withSummaryFields(Query query) {
+		query.fields().include(UserSummary.FIELDS);
+		return query;
+	}
+
 	@Override
 	public ResponseEntity<?> updateUser(UpdateUserRequest request) {
 		logger.info("Updating user info for user - {}", request.getEmail());
 		Query query = new Query();
 		query.addCriteria(Criteria.where("email").is(request.getEmail()));
-		User user = this.mongoTemplate.findOne(query, User.class);
-		if (user != null) {
-			if (request.getFirstName() != null) {
-				user.setFirstName(request.getFirstName());
-			}
-			if (request.getLastName() != null) {
-				user.setLastName(request.getLastName());
-			}
-			if (request.getEmail() != null) {
-				user.setEmail(request.getEmail());
-			}
-			if (request.getPhone() != null) {
-				user.setPhone(request.getPhone());
-			}
-			if (request.getAddress() != null) {
-				user.setAddress(request.getAddress());
-			}
-
-			if (request.getPassword() != null) {
-				logger.info("Updating password for user -{}", user.getEmail());
-				KeyStorage keyStorage = this.mongoTemplate.findOne(query, KeyStorage.class,
-						CollectionConstants.KEY_STORAGE);
-				SecretKey secretKey;
-				if (keyStorage != null) {
-					String encodedKey = keyStorage.getSecretKey();
-					byte[] secretKeyBytes = Base64Utils.decodeFromString(encodedKey);
-					secretKey = new SecretKeySpec(secretKeyBytes, "AES");
-				} else {
-					keyStorage = new KeyStorage();
-					secretKey = this.encryptionUtils.generateSecretKey();
-					keyStorage.setEmail(request.getEmail());
-					byte[] secretKeyBytes = secretKey.getEncoded();
-					String encodedSecretKey = Base64Utils.encodeToString(secretKeyBytes);
-					keyStorage.setSecretKey(encodedSecretKey);
-					this.mongoTemplate.save(keyStorage);
-				}
-				String encryptedPassword = this.encryptionUtils.encrypt(request.getPassword(), secretKey);
-				System.out.println("Encrypted password - " + encryptedPassword);
-				user.setPassword(encryptedPassword);
-			}
 
-			this.mongoTemplate.save(user);
-			return new ResponseEntity<>("User is successfully updated", HttpStatus.OK);
+		// Only the fields present in the request are written
+		Update update = new Update();
+		if (request.getFirstName() != null) {
+			update.set("firstName", request.getFirstName());
+		}
+		if (request.getLastName() != null) {
+			update.set("lastName", request.getLastName());
+		}
+		if (request.getPhone() != null) {
+			update.set("phone", request.getPhone());
+		}
+		if (request.getAddress() != null) {
+			update.set("address", request.getAddress());
+		}
+		if (request.getPassword() != null) {
+			logger.info("Updating password for user -{}", request.getEmail());
+			update.set("password", this.credentialService.encodePassword(request.getPassword()));
+		}
+		update.set("lastModifiedDate", new Date());
+		update.inc("version", 1);
+
+		boolean tokensChanged = request.getFirstName() != null || request.getLastName() != null
+				|| request.getPhone() != null;
+		User user;
+		if (tokensChanged) {
+			user = this.updateWithSearchTokens(query, update, request);
 		} else {
+			user = this.mongoTemplate.findAndModify(this.withVersion(query, request.getVersion()), update,
+					FindAndModifyOptions.options().returnNew(true), User.class);
+		}
+		if (user == null) {
+			if ((request.getVersion() != null || tokensChanged) && this.mongoTemplate.exists(query, User.class)) {
+				return new ResponseEntity<>("User " + request.getEmail() + " was modified by another request",
+						HttpStatus.CONFLICT);
+			}
 			return new ResponseEntity<>("No User found with Id- " + request.getEmail(), HttpStatus.NOT_FOUND);
 		}
+
+		if (request.getPassword() != null) {
+			// Hashed passwords don't need the legacy per-user AES key any more
+			this.mongoTemplate.remove(query, KeyStorage.class);
+		}
+		this.credentialCache.invalidate(request.getEmail());
+		return new ResponseEntity<>("User is successfully updated", HttpStatus.OK);
 	}
 
 	@Override
@@ -195,50 +313,114 @@ public class UserServiceImpl implements UserService {
 		logger.info("Deleting user with email -{}", email);
 		Query query = new Query();
 		query.addCriteria(Criteria.where("email").is(email));
-		User user = this.mongoTemplate.findOne(query, User.class);
-		if (user != null) {
-			user.setStatus(TrainingConstants.DELETED);
-			this.mongoTemplate.save(user);
+		Update update = new Update();
+		update.set("status", TrainingConstants.DELETED);
+		update.set("lastModifiedDate", new Date());
+		update.inc("version", 1);
+		if (this.mongoTemplate.updateFirst(query, update, User.class).getMatchedCount() > 0) {
 			// Removing corresponding secretkey
 			this.mongoTemplate.remove(query, KeyStorage.class);
+			this.credentialCache.invalidate(email);
 			return new ResponseEntity<>("User " + email + " is successfully deleted", HttpStatus.OK);
 		} else {
 			return new ResponseEntity<>("No Customer found with Id-" + email, HttpStatus.NOT_FOUND);
 		}
 	}
 
+	/**
+	 * Name or phone changes also rewrite the search tokens. They are computed
+	 * from the stored document merged with the request and written in the same
+	 * update, conditioned on the version that was read, so a concurrent update
+	 * cannot leave tokens built from an older document. Without a client
+	 * version a lost race is retried; with one it surfaces as a conflict.
+	 */
+	private User updateWithSearchTokens(Query query, Update update, UpdateUserRequest request) {
+		for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+			Query current = Query.of(query);
+			current.fields().include("firstName", "lastName", "email", "city", "state", "country", "zipCode",
+					"phone", "version");
+			User existing = this.mongoTemplate.findOne(current, User.class);
+			if (existing == null
+					|| (request.getVersion() != null && !request.getVersion().equals(existing.getVersion()))) {
+				return null;
+			}
+
+			if (request.getFirstName() != null) {
+				existing.setFirstName(request.getFirstName());
+			}
+			if (request.getLastName() != null) {
+				existing.setLastName(request.getLastName());
+			}
+			if (request.getPhone() != null) {
+				existing.setPhone(request.getPhone());
+			}
+			update.set("searchTokens", getSearchTokens(existing));
+
+			// is(null) also matches legacy documents written before the version field existed
+			Query versioned = Query.of(query).addCriteria(Criteria.where("version").is(existing.getVersion()));
+			User user = this.mongoTemplate.findAndModify(versioned, update,
+					FindAndModifyOptions.options().returnNew(true), User.class);
+			if (user != null || request.getVersion() != null) {
+				return user;
+			}
+		}
+		return null;
+	}
+
+	private Query withVersion(Query query, Long version) {
+		if (version == null) {
+			return query;
+		}
+		return Query.of(query).addCriteria(Criteria.where("version").is(version));
+	}
+
 	private Query getSearchQuery(String searchInput) {
+		// Every term must prefix-match one of the user's normalised search tokens
 		Query query = new Query();
 		List<Criteria> criterias = new LinkedList<>();
-		Criteria searchCriteria = new Criteria();
-		searchCriteria.orOperator(
-				Criteria.where("customerId")
-						.regex(Pattern.compile(searchInput, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
-				Criteria.where("firstName")
-						.regex(Pattern.compile(searchInput, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
-				Criteria.where("email")
-						.regex(Pattern.compile(searchInput, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
-				Criteria.where("city")
-						.regex(Pattern.compile(searchInput, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
-				Criteria.where("state")
-						.regex(Pattern.compile(searchInput, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
-				Criteria.where("country")
-						.regex(Pattern.compile(searchInput, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
-				Criteria.where("lastName")
-						.regex(Pattern.compile(searchInput, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
-				Criteria.where("zipCode")
-						.regex(Pattern.compile(searchInput, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
-				Criteria.where("phone")
-						.regex(Pattern.compile(searchInput, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)));
-		criterias.add(searchCriteria);
+		for (String term : SearchUtils.terms(searchInput)) {
+			criterias.add(Criteria.where("searchTokens").regex(SearchUtils.prefixRegex(term)));
+		}
 		if (!CollectionUtils.isEmpty(criterias)) {
 			Criteria criteria = new Criteria();
 			criteria.andOperator(criterias.stream().toArray(Criteria[]::new));
 			query.addCriteria(criteria);
 		}
+		query.limit(this.searchLimit);
 		return query;
 	}
 
+	private static List<String> getSearchTokens(User user) {
+		return SearchUtils.tokenize(user.getFirstName(), user.getLastName(), user.getEmail(), user.getCity(),
+				user.getState(), user.getCountry(), user.getZipCode(), user.getPhone());
+	}
+
+	private void backfillSearchTokens() {
+		Query query = new Query();
+		query.addCriteria(Criteria.where("searchTokens").exists(false));
+		query.fields().include("firstName", "lastName", "email", "city", "state", "country", "zipCode", "phone");
+		query.cursorBatchSize(STREAM_BATCH_SIZE);
+
+		int updated = 0;
+		BulkOperations bulkOperations = this.mongoTemplate.bulkOps(BulkMode.UNORDERED, User.class);
+		try (Stream<User> users = this.mongoTemplate.stream(query, User.class)) {
+			Iterator<User> iterator = users.iterator();
+			while (iterator.hasNext()) {
+				User user = iterator.next();
+				bulkOperations.updateOne(Query.query(Criteria.where("_id").is(new ObjectId(user.getId()))),
+						Update.update("searchTokens", getSearchTokens(user)));
+				if (++updated % STREAM_BATCH_SIZE == 0) {
+					bulkOperations.execute();
+					bulkOperations = this.mongoTemplate.bulkOps(BulkMode.UNORDERED, User.class);
+				}
+			}
+		}
+		if (updated % STREAM_BATCH_SIZE != 0) {
+			bulkOperations.execute();
+		}
+		logger.info("Backfilled search tokens for {} users", updated);
+	}
+
 	@Override
 	public ResponseEntity<?> loginAuthentication(String username, String password) {
 		logger.info("Authenticating user -{}", username);
@@ -247,36 +429,29 @@ public class UserServiceImpl implements UserService {
 		}
 		Query query = new Query();
 		query.addCriteria(Criteria.where("email").is(username));
-		if (this.mongoTemplate.count(query, User.class) == 0) {
-			return new ResponseEntity<>("Email doesn't exist", HttpStatus.BAD_REQUEST);
-		}
 		User user = this.mongoTemplate.findOne(query, User.class);
 		if (user != null) {
-			KeyStorage keyStorage = this.mongoTemplate.findOne(query, KeyStorage.class,
-					CollectionConstants.KEY_STORAGE);
-
-			String encodedKey = keyStorage.getSecretKey();
-			byte[] secretKeyBytes = Base64Utils.decodeFromString(encodedKey);
-			SecretKey secretKey = new SecretKeySpec(secretKeyBytes, "AES");
-
-			String decryptedPassword = this.encryptionUtils.decrypt(user.getPassword(), secretKey);
-
-			if (StringUtils.equalsIgnoreCase(decryptedPassword, password)) {
+			if (this.credentialService.verifyPassword(user, password)) {
 				logger.info("verifying if correct credentials...");
-				// Check if the current token has expired
-				if (StringUtils.isEmpty(user.getToken()) || jwtUtils.isTokenExpired(user.getToken())) {
+				// Check the expiry stored at issue time instead of re-parsing and re-verifying the token
+				ParsedToken storedToken = new ParsedToken(user.getToken(), user.getEmail(), user.getTokenExpiry(),
+						null);
+				if (StringUtils.isEmpty(user.getToken()) || storedToken.isExpired()) {
 					logger.info("Token is either empty or expired");
 
 					// Token has expired or empty, generate a new token
-					String jwtToken = jwtUtils.generateToken(user.getEmail());
+					ParsedToken jwtToken = jwtUtils.issueToken(user.getEmail());
 
-					logger.info("Generated token : {} ", jwtToken);
+					logger.info("Generated token : {} ", jwtToken.getToken());
 
 					// Update the token and its expiration in the user object
-					user.setToken(jwtToken);
-					user.setTokenExpiry(jwtUtils.extractExpiration(jwtToken));
+					user.setToken(jwtToken.getToken());
+					user.setTokenExpiry(jwtToken.getExpiration());
 
-					this.mongoTemplate.save(user);
+					Update update = new Update();
+					update.set("token", user.getToken());
+					update.set("tokenExpiry", user.getTokenExpiry());
+					this.mongoTemplate.updateFirst(query, update, User.class);
 				}
 
 				return new ResponseEntity<>(user, HttpStatus.OK);
@@ -284,7 +459,7 @@ public class UserServiceImpl implements UserService {
 				return new ResponseEntity<>("Invalid credentials", HttpStatus.BAD_REQUEST);
 			}
 		} else {
-			return new ResponseEntity<>("Email Id doesn't exist", HttpStatus.FORBIDDEN);
+			return new ResponseEntity<>("Email doesn't exist", HttpStatus.BAD_REQUEST);
 		}
 	}
 
@@ -297,12 +472,10 @@ public class UserServiceImpl implements UserService {
 
 		// Check if the user exists and the token is valid
 		if (user != null) {
-			if (user.getEmailExpiry().after(new Date())) {
+			if (user.getEmailExpiry() != null && user.getEmailExpiry().after(new Date())) {
 				// Mark the email as verified
 				user.setEmailVerified(true);
-
-				// Save the updated user
-				this.mongoTemplate.save(user);
+				this.mongoTemplate.updateFirst(query, Update.update("emailVerified", true), User.class);
 
 				return new ResponseEntity<>("Email verification successful", HttpStatus.OK);
 			} else {
@@ -321,14 +494,16 @@ public class UserServiceImpl implements UserService {
 		User user = mongoTemplate.findOne(query, User.class);
 
 		if (user != null) {
-			user.setEmailExpiry(this.calculateEmailTokenExpiry());
-			this.mongoTemplate.save(user);
+			user.setEmailExpiry(this.emailLinks.tokenExpiry());
+			this.mongoTemplate.updateFirst(query, Update.update("emailExpiry", user.getEmailExpiry()), User.class);
 
-			Map<String, String> emailContent = this.getEmailContent(user, operation);
+			RenderedEmail emailContent = this.getEmailContent(user, operation);
+			if (emailContent == null) {
+				return new ResponseEntity<>("Unsupported email operation", HttpStatus.BAD_REQUEST);
+			}
 
-			// Sending the verification email
-			emailService.send("no-reply@suchiit.com", user.getEmail(), null, null, emailContent.get("subject"),
-					emailContent.get("text"));
+			// Queued on the email outbox; delivery happens in the background
+			emailService.send("no-reply@suchiit.com", user.getEmail(), emailContent);
 
 			return new ResponseEntity<>("Verification email sent successfully", HttpStatus.OK);
 		} else {
@@ -336,81 +511,28 @@ public class UserServiceImpl implements UserService {
 		}
 	}
 
-	private Date calculateEmailTokenExpiry() {
-		Calendar calendar = Calendar.getInstance();
-		calendar.add(Calendar.HOUR_OF_DAY, 2);
-		return calendar.getTime();
-	}
-
-	private Map<String, String> getEmailContent(User user, String operation) {
-		// Preparing the verification email content based on operation
-		String subject = "";
-		String text = "";
-
+	private RenderedEmail getEmailContent(User user, String operation) {
+		String template;
 		if (TrainingConstants.VERIFY_EMAIL.equalsIgnoreCase(operation)) {
-			subject = "Email Verification SITC - Action Required";
-			text = "Dear " + user.getFirstName() + " " + user.getLastName() + ",\n\n"
-					+ "Thank you for choosing our platform. To complete your registration, please click the following link to verify your email address:\n"
-					+ "http://sitc.com/verify?token=" + user.getUniqueId()
-					+ "\n\nNote: This link will expire in 2 hours.\n\n"
-					+ "If you did not sign up for our platform, please ignore this email.\n\n"
-					+ "Best Regards,\nThe SITC Team";
+			template = EmailLinks.VERIFY_EMAIL_TEMPLATE;
 		} else if (TrainingConstants.FORGOT_PASSWORD.equalsIgnoreCase(operation)) {
-			subject = "Password Reset SITC - Action Required";
-			text = "Dear " + user.getFirstName() + " " + user.getLastName() + ",\n\n"
-					+ "We received a request to reset your password. Click the following link to reset your password:\n"
-					+ "http://sitc.com/reset-password?token=" + user.getUniqueId()
-					+ "\n\nNote: This link will expire in 2 hours.\n\n"
-					+ "If you did not request a password reset, please ignore this email.\n\n"
-					+ "Best Regards,\nThe SITC Team";
-		}
-
-		Map<String, String> emailContent = new HashMap<>();
-		emailContent.put("subject", subject);
-		emailContent.put("text", text);
-
-		return emailContent;
-	}
-
-	@Override
-	@Async
-	public void calculateRemainingCredits(String userId) {
-		Query query = new Query();
-		query.addCriteria(Criteria.where("email").is(userId));
-
-		List<CreditsDetails> creditsDetailsList = mongoTemplate.find(query, CreditsDetails.class);
-
-		int remainingCredits = 0;
-
-		if (CollectionUtils.isEmpty(creditsDetailsList)) {
-			logger.info("There are no credits transactions found for the user- {}", userId);
-			return;
+			template = EmailLinks.RESET_PASSWORD_TEMPLATE;
 		} else {
-			for (CreditsDetails creditsDetails : creditsDetailsList) {
-				if (TrainingConstants.ADD.equals(creditsDetails.getType())) {
-					remainingCredits += creditsDetails.getAmount();
-				} else if (TrainingConstants.USE.equals(creditsDetails.getType())) {
-					remainingCredits -= creditsDetails.getAmount();
-				}
-			}
-
-			User user = this.mongoTemplate.findOne(query, User.class);
-			if (user != null) {
-				user.setCredits(remainingCredits);
-				this.mongoTemplate.save(user);
-				logger.info("Successfully saved latest credits for user - {}", userId);
-			} else {
-				logger.info("User not found -{}", userId);
-				return;
-			}
-
+			return null;
 		}
 
+		Map<String, Object> model = new HashMap<>(8);
+		model.put("firstName", user.getFirstName());
+		model.put("lastName", user.getLastName());
+		model.put("link", this.emailLinks.tokenLink(template, user.getUniqueId()));
+		model.put("expiryHours", EmailLinks.TOKEN_EXPIRY_HOURS);
+		return this.emailTemplateEngine.render(template, LocaleContextHolder.getLocale(), model);
 	}
 
 	private void addCredits(String referredBy) {
 		Query query = new Query();
 		query.addCriteria(Criteria.where("referralId").is(referredBy));
+		query.fields().include("email");
 
 		User user = this.mongoTemplate.findOne(query, User.class);
 
@@ -420,15 +542,13 @@ public class UserServiceImpl implements UserService {
 			creditsDetails.setType(TrainingConstants.ADD);
 			creditsDetails.setUserId(user.getEmail());
 			creditsDetails.setTransactionDate(new Date());
-			this.mongoTemplate.save(creditsDetails);
+			this.creditLedgerService.recordCreditEvent(creditsDetails);
 
 			logger.info("Successfully captured referral credits into db for user- {}", user.getEmail());
-
-			this.calculateRemainingCredits(user.getEmail());
 		} else {
 			logger.info("Invalid referral code used- {}", referredBy);
 		}
 
 	}
 
-}
\ No newline at end of file
+}
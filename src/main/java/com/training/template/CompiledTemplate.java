@@ -0,0 +1,88 @@
+package com.training.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Render plan for one template part: the literal text split around its
+ * {@code {{name}}} placeholders. Parsing happens once when the template is
+ * loaded; rendering only appends literals and looked-up values to the buffer.
+ */
+final class CompiledTemplate {
+
+	private static final String OPEN = "{{";
+
+	private static final String CLOSE = "}}";
+
+	// literals.length == variables.length + 1; literal i is followed by variable i
+	private final String[] literals;
+
+	private final String[] variables;
+
+	private final boolean escapeHtml;
+
+	private CompiledTemplate(String[] literals, String[] variables, boolean escapeHtml) {
+		this.literals = literals;
+		this.variables = variables;
+		this.escapeHtml = escapeHtml;
+	}
+
+	static CompiledTemplate compile(String source, boolean escapeHtml) {
+		List<String> literals = new ArrayList<>();
+		List<String> variables = new ArrayList<>();
+		int position = 0;
+		while (true) {
+			int open = source.indexOf(OPEN, position);
+			int close = open < 0 ? -1 : source.indexOf(CLOSE, open + OPEN.length());
+			if (close < 0) {
+				literals.add(source.substring(position));
+				break;
+			}
+			literals.add(source.substring(position, open));
+			variables.add(source.substring(open + OPEN.length(), close).trim());
+			position = close + CLOSE.length();
+		}
+		return new CompiledTemplate(literals.toArray(new String[0]), variables.toArray(new String[0]), escapeHtml);
+	}
+
+	void render(Map<String, ?> model, StringBuilder out) {
+		out.append(this.literals[0]);
+		for (int i = 0; i < this.variables.length; i++) {
+			Object value = model.get(this.variables[i]);
+			if (value != null) {
+				if (this.escapeHtml) {
+					appendEscaped(value.toString(), out);
+				} else {
+					out.append(value);
+				}
+			}
+			out.append(this.literals[i + 1]);
+		}
+	}
+
+	private static void appendEscaped(String value, StringBuilder out) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '<':
+				out.append("&lt;");
+				break;
+			case '>':
+				out.append("&gt;");
+				break;
+			case '&':
+				out.append("&amp;");
+				break;
+			case '"':
+				out.append("&quot;");
+				break;
+			case '\'':
+				out.append("&#39;");
+				break;
+			default:
+				out.append(c);
+			}
+		}
+	}
+}
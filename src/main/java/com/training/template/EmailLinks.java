@@ -0,0 +1,53 @@
+package com.training.template;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the token links carried by the verify-email and reset-password
+ * templates, so single sends and campaigns produce the same link and expiry.
+ * The token is the user's uniqueId; it is accepted until the user's
+ * emailExpiry, which the sender must set to {@link #tokenExpiry()}.
+ */
+@Component
+public class EmailLinks {
+
+	public static final int TOKEN_EXPIRY_HOURS = 2;
+
+	public static final String VERIFY_EMAIL_TEMPLATE = "verify-email";
+
+	public static final String RESET_PASSWORD_TEMPLATE = "reset-password";
+
+	@Value("${mail.links.baseUrl:http://sitc.com}")
+	private String baseUrl;
+
+	public boolean hasTokenLink(String template) {
+		return VERIFY_EMAIL_TEMPLATE.equals(template) || RESET_PASSWORD_TEMPLATE.equals(template);
+	}
+
+	/**
+	 * The token link for {@code template}, or null if it doesn't carry one.
+	 */
+	public String tokenLink(String template, String uniqueId) {
+		if (VERIFY_EMAIL_TEMPLATE.equals(template)) {
+			return this.baseUrl + "/verify?token=" + uniqueId;
+		}
+		if (RESET_PASSWORD_TEMPLATE.equals(template)) {
+			return this.baseUrl + "/reset-password?token=" + uniqueId;
+		}
+		return null;
+	}
+
+	public Date tokenExpiry() {
+		Calendar calendar = Calendar.getInstance();
+		calendar.add(Calendar.HOUR_OF_DAY, TOKEN_EXPIRY_HOURS);
+		return calendar.getTime();
+	}
+
+	public String getBaseUrl() {
+		return this.baseUrl;
+	}
+}
@@ -0,0 +1,169 @@
+package com.training.template;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import com.training.model.RenderedEmail;
+
+/**
+ * Renders the email templates under {@code templates/email} on the classpath.
+ * A template {@code name} consists of {@code name.subject.txt}, plus a plain
+ * text body {@code name.txt} and/or an HTML body {@code name.html}; values in
+ * the HTML body are escaped. Localised variants are looked up as
+ * {@code name_fr_CA}, then {@code name_fr}, then {@code name}.
+ * <p>
+ * The variants on the classpath are listed once at startup, so lookups for
+ * variants that don't exist (e.g. an arbitrary Accept-Language) cost nothing
+ * and are never cached. Each existing variant is read and compiled once and
+ * cached for the life of the process. Rendering reuses a per-thread buffer, so the only allocations per
+ * email are the resulting strings.
+ */
+@Component
+public class EmailTemplateEngine {
+
+	private static final String TEMPLATE_ROOT = "templates/email/";
+
+	private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+	private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+
+	private static final String SUBJECT_SUFFIX = ".subject.txt";
+
+	private static final Logger logger = LoggerFactory.getLogger(EmailTemplateEngine.class);
+
+	// Bounded by the variants shipped on the classpath
+	private final ConcurrentMap<String, EmailTemplate> templates = new ConcurrentHashMap<>();
+
+	private final Set<String> variants;
+
+	public EmailTemplateEngine() {
+		Set<String> found = new HashSet<>();
+		try {
+			for (Resource resource : new PathMatchingResourcePatternResolver()
+					.getResources("classpath*:" + TEMPLATE_ROOT + "*" + SUBJECT_SUFFIX)) {
+				String filename = resource.getFilename();
+				if (filename != null) {
+					found.add(filename.substring(0, filename.length() - SUBJECT_SUFFIX.length()));
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to list email templates", e);
+		}
+		this.variants = Collections.unmodifiableSet(found);
+		logger.info("Found email template variants {}", this.variants);
+	}
+
+	public boolean exists(String name) {
+		return this.getTemplate(name, Locale.ROOT) != null;
+	}
+
+	public RenderedEmail render(String name, Locale locale, Map<String, ?> model) {
+		EmailTemplate template = this.getTemplate(name, locale == null ? Locale.ROOT : locale);
+		if (template == null) {
+			throw new IllegalArgumentException("Unknown email template: " + name);
+		}
+
+		StringBuilder buffer = BUFFER.get();
+		try {
+			String subject = render(template.subject, model, buffer);
+			String text = render(template.text, model, buffer);
+			String html = render(template.html, model, buffer);
+			return new RenderedEmail(subject, text, html);
+		} finally {
+			if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+				BUFFER.remove();
+			}
+		}
+	}
+
+	private static String render(CompiledTemplate template, Map<String, ?> model, StringBuilder buffer) {
+		if (template == null) {
+			return null;
+		}
+		buffer.setLength(0);
+		template.render(model, buffer);
+		return buffer.toString();
+	}
+
+	private EmailTemplate getTemplate(String name, Locale locale) {
+		if (!locale.getLanguage().isEmpty()) {
+			if (!locale.getCountry().isEmpty()) {
+				EmailTemplate template = this.getVariant(
+						name + "_" + locale.getLanguage() + "_" + locale.getCountry());
+				if (template != null) {
+					return template;
+				}
+			}
+			EmailTemplate template = this.getVariant(name + "_" + locale.getLanguage());
+			if (template != null) {
+				return template;
+			}
+		}
+		return this.getVariant(name);
+	}
+
+	private EmailTemplate getVariant(String baseName) {
+		if (!this.variants.contains(baseName)) {
+			return null;
+		}
+		// computeIfAbsent doesn't store a null result, so an incomplete variant is simply retried
+		return this.templates.computeIfAbsent(baseName, this::load);
+	}
+
+	private EmailTemplate load(String baseName) {
+		String subject = read(baseName + SUBJECT_SUFFIX);
+		String text = read(baseName + ".txt");
+		String html = read(baseName + ".html");
+		if (subject == null || (text == null && html == null)) {
+			logger.warn("Email template {} has a subject but no body", baseName);
+			return null;
+		}
+		logger.info("Compiled email template {}", baseName);
+		return new EmailTemplate(CompiledTemplate.compile(subject.trim(), false),
+				text == null ? null : CompiledTemplate.compile(text, false),
+				html == null ? null : CompiledTemplate.compile(html, true));
+	}
+
+	private static String read(String path) {
+		ClassPathResource resource = new ClassPathResource(TEMPLATE_ROOT + path);
+		if (!resource.exists()) {
+			return null;
+		}
+		try (InputStream inputStream = resource.getInputStream()) {
+			return StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to read email template " + path, e);
+		}
+	}
+
+	private static final class EmailTemplate {
+
+		private final CompiledTemplate subject;
+
+		private final CompiledTemplate text;
+
+		private final CompiledTemplate html;
+
+		EmailTemplate(CompiledTemplate subject, CompiledTemplate text, CompiledTemplate html) {
+			this.subject = subject;
+			this.text = text;
+			this.html = html;
+		}
+	}
+}
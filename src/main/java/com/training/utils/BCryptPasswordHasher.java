@@ -0,0 +1,47 @@
+package com.training.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * bcrypt hasher backed by Spring Security's encoder. The cost factor is
+ * encoded in the hash itself ({@code $2a$<strength>$...}).
+ */
+@Component
+public class BCryptPasswordHasher implements PasswordHasher {
+
+	private static final String ID = "bcrypt";
+
+	private final BCryptPasswordEncoder encoder;
+
+	public BCryptPasswordHasher(@Value("${password.hash.bcrypt.strength:10}") int strength) {
+		this.encoder = new BCryptPasswordEncoder(strength);
+	}
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public String hash(String rawPassword) {
+		return this.encoder.encode(rawPassword);
+	}
+
+	@Override
+	public boolean matches(String rawPassword, String encodedPassword) {
+		return this.encoder.matches(rawPassword, encodedPassword);
+	}
+
+	@Override
+	public boolean supports(String encodedPassword) {
+		return encodedPassword != null && (encodedPassword.startsWith("$2a$") || encodedPassword.startsWith("$2b$")
+				|| encodedPassword.startsWith("$2y$"));
+	}
+
+	@Override
+	public boolean needsRehash(String encodedPassword) {
+		return this.encoder.upgradeEncoding(encodedPassword);
+	}
+}
@@ -0,0 +1,81 @@
+package com.training.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over strings. {@link #mightContain(String)} never
+ * returns false for a value that was added; it returns true for a value that
+ * was not added with roughly the false-positive probability the filter was
+ * sized for.
+ */
+public class BloomFilter {
+
+	private final AtomicLongArray bits;
+
+	private final long bitCount;
+
+	private final int hashCount;
+
+	public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+		if (expectedInsertions < 1 || falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+			throw new IllegalArgumentException("Invalid Bloom filter sizing");
+		}
+		long optimalBits = (long) Math.ceil(
+				-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+		int words = (int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) >>> 6);
+		this.bits = new AtomicLongArray(words);
+		this.bitCount = (long) words << 6;
+		this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / expectedInsertions * Math.log(2)));
+	}
+
+	public void put(String value) {
+		long hash1 = hash1(value);
+		long hash2 = hash2(value);
+		for (int i = 0; i < this.hashCount; i++) {
+			long index = Long.remainderUnsigned(hash1 + i * hash2, this.bitCount);
+			int word = (int) (index >>> 6);
+			long mask = 1L << index;
+			long current;
+			while (((current = this.bits.get(word)) & mask) == 0
+					&& !this.bits.compareAndSet(word, current, current | mask)) {
+				// Lost a race with another bit in the same word; retry
+			}
+		}
+	}
+
+	public boolean mightContain(String value) {
+		long hash1 = hash1(value);
+		long hash2 = hash2(value);
+		for (int i = 0; i < this.hashCount; i++) {
+			long index = Long.remainderUnsigned(hash1 + i * hash2, this.bitCount);
+			if ((this.bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Two independent 64-bit hashes combined by double hashing (Kirsch-Mitzenmacher)
+	private static long hash1(String value) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b;
+			hash *= 0x100000001b3L;
+		}
+		return mix(hash);
+	}
+
+	private static long hash2(String value) {
+		return mix(value.hashCode() * 0x9e3779b97f4a7c15L) | 1L;
+	}
+
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb93e2e2bf70bL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -2,19 +2,36 @@ package com.training.utils;
 
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
+import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 
 @Component
 public class EncryptionUtils {
 
+	private static final String ALGORITHM = "AES";
+
+	// Cipher instances are not thread-safe, so each thread keeps one per mode
+	private static final ThreadLocal<Cipher> encryptCiphers = ThreadLocal.withInitial(EncryptionUtils::newCipher);
+
+	private static final ThreadLocal<Cipher> decryptCiphers = ThreadLocal.withInitial(EncryptionUtils::newCipher);
+
+	private final Cache<String, SecretKey> secretKeys = Caffeine.newBuilder().maximumSize(10000).build();
+
 	public String encrypt(String plaintext, SecretKey secretKey) {
 		try {
-			Cipher cipher = Cipher.getInstance("AES");
+			Cipher cipher = encryptCiphers.get();
 			cipher.init(Cipher.ENCRYPT_MODE, secretKey);
 			byte[] encryptedBytes = cipher.doFinal(plaintext.getBytes());
 			return Base64.getEncoder().encodeToString(encryptedBytes);
@@ -25,7 +42,7 @@ public class EncryptionUtils {
 
 	public String decrypt(String encryptedText, SecretKey secretKey) {
 		try {
-			Cipher cipher = Cipher.getInstance("AES");
+			Cipher cipher = decryptCiphers.get();
 			cipher.init(Cipher.DECRYPT_MODE, secretKey);
 			byte[] encryptedBytes = Base64.getDecoder().decode(encryptedText);
 			byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
@@ -35,13 +52,38 @@ public class EncryptionUtils {
 		}
 	}
 
+	/**
+	 * Decrypts a batch of (encrypted text, Base64 key) pairs on the calling
+	 * thread's cipher. Results are returned in input order.
+	 */
+	public List<String> decryptAll(List<Pair<String, String>> encryptedTexts) {
+		List<String> decryptedTexts = new ArrayList<>(encryptedTexts.size());
+		for (Pair<String, String> encryptedText : encryptedTexts) {
+			decryptedTexts.add(this.decrypt(encryptedText.getLeft(), this.getSecretKey(encryptedText.getRight())));
+		}
+		return decryptedTexts;
+	}
+
+	public SecretKey getSecretKey(String encodedKey) {
+		return this.secretKeys.get(encodedKey,
+				key -> new SecretKeySpec(Base64.getDecoder().decode(key), ALGORITHM));
+	}
+
 	public SecretKey generateSecretKey() {
 		try {
-			KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+			KeyGenerator keyGenerator = KeyGenerator.getInstance(ALGORITHM);
 			keyGenerator.init(128);
 			return keyGenerator.generateKey();
 		} catch (NoSuchAlgorithmException e) {
 			throw new RuntimeException("Error generating encryption key: " + e.getMessage(), e);
 		}
 	}
+
+	private static Cipher newCipher() {
+		try {
+			return Cipher.getInstance(ALGORITHM);
+		} catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+			throw new RuntimeException("Error creating cipher: " + e.getMessage(), e);
+		}
+	}
 }
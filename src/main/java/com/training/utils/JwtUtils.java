@@ -2,6 +2,7 @@ package com.training.utils;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -11,17 +12,21 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.training.constants.TrainingConstants;
+import com.training.model.ParsedToken;
+
 import java.security.Key;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
-import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
 
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
-import java.util.ArrayList;
 import java.util.List;
 
 @Component
@@ -35,45 +40,63 @@ public class JwtUtils {
 
 	private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+	private static final List<SimpleGrantedAuthority> DEFAULT_AUTHORITIES = Collections
+			.singletonList(new SimpleGrantedAuthority(TrainingConstants.USER));
+
+	// Signing key and parser are immutable and thread-safe, so build them once
+	private Key signingKey;
+
+	private JwtParser jwtParser;
+
+	@PostConstruct
+	public void init() {
+		this.signingKey = Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET_KEY));
+		this.jwtParser = Jwts.parserBuilder().setSigningKey(this.signingKey).build();
+	}
+
 	public String generateToken(String username) {
 		return createToken(username);
 	}
 
 	public String createToken(String subject) {
+		return issueToken(subject).getToken();
+	}
+
+	public ParsedToken issueToken(String subject) {
 		Date now = new Date();
 		Date expirationDate = new Date(now.getTime() + TOKEN_VALIDITY_MINUTES * 60 * 1000);
 
-		Key key = Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET_KEY));
+		String token = Jwts.builder().setSubject(subject).setIssuedAt(now).setExpiration(expirationDate)
+				.signWith(this.signingKey, SignatureAlgorithm.HS256).compact();
+		return new ParsedToken(token, subject, expirationDate, DEFAULT_AUTHORITIES);
+	}
 
-		return Jwts.builder().setSubject(subject).setIssuedAt(now).setExpiration(expirationDate)
-				.signWith(SignatureAlgorithm.HS256, key).compact();
+	/**
+	 * Verifies the signature and reads the claims in a single pass. Throws the
+	 * usual {@link io.jsonwebtoken.JwtException} subtypes for invalid or expired
+	 * tokens.
+	 */
+	public ParsedToken parseToken(String token) {
+		Claims claims = this.jwtParser.parseClaimsJws(token).getBody();
+		return new ParsedToken(token, claims.getSubject(), claims.getExpiration(), DEFAULT_AUTHORITIES);
 	}
 
 	public Boolean validateToken(String token, String username) {
-		final String extractedUsername = extractUsername(token);
-		return (username.equals(extractedUsername) && !isTokenExpired(token));
+		ParsedToken parsedToken = parseToken(token);
+		return (username.equals(parsedToken.getSubject()) && !parsedToken.isExpired());
 	}
 
 	public String extractUsername(String token) {
-		return extractClaim(token, Claims::getSubject);
+		return parseToken(token).getSubject();
 	}
 
 	public Date extractExpiration(String token) {
-		return extractClaim(token, Claims::getExpiration);
-	}
-
-	private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-		final Claims claims = extractAllClaims(token);
-		return claimsResolver.apply(claims);
-	}
-
-	private Claims extractAllClaims(String token) {
-		return Jwts.parser().setSigningKey(Base64.getDecoder().decode(SECRET_KEY)).parseClaimsJws(token).getBody();
+		return parseToken(token).getExpiration();
 	}
 
 	public Boolean isTokenExpired(String token) {
 		try {
-			return extractExpiration(token).before(new Date());
+			return parseToken(token).isExpired();
 		} catch (ExpiredJwtException e) {
 			logger.info("Token as expired..sending flag");
 			return Boolean.TRUE.booleanValue();
@@ -84,21 +107,15 @@ public class JwtUtils {
 	}
 
 	public Authentication getAuthenticationFromToken(String token) {
-		// Extract claims from the token
-		Claims claims = extractAllClaims(token);
-
-		// Extract the username from the claims
-		String username = claims.getSubject();
-
-		// Extract any additional user information you may have stored in the token
-		// For example, roles or authorities
-		List<SimpleGrantedAuthority> authorities = new ArrayList<>();
-		authorities.add(new SimpleGrantedAuthority("USER"));
+		return getAuthentication(parseToken(token));
+	}
 
+	public Authentication getAuthentication(ParsedToken parsedToken) {
 		// Create an instance of UserDetails if needed
-		UserDetails userDetails = new org.springframework.security.core.userdetails.User(username, "", authorities);
+		UserDetails userDetails = new org.springframework.security.core.userdetails.User(parsedToken.getSubject(),
+				"", parsedToken.getAuthorities());
 
 		// Return an authentication token with the UserDetails and authorities
-		return new UsernamePasswordAuthenticationToken(userDetails, null, authorities);
+		return new UsernamePasswordAuthenticationToken(userDetails, null, parsedToken.getAuthorities());
 	}
 }
@@ -0,0 +1,19 @@
+package com.training.utils;
+
+/**
+ * One-way password hashing scheme. Encoded values carry their own scheme
+ * prefix and cost parameters so that several schemes can coexist while
+ * stored passwords are migrated between them.
+ */
+public interface PasswordHasher {
+
+	String getId();
+
+	String hash(String rawPassword);
+
+	boolean matches(String rawPassword, String encodedPassword);
+
+	boolean supports(String encodedPassword);
+
+	boolean needsRehash(String encodedPassword);
+}
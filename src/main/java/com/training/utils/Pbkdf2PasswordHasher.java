@@ -0,0 +1,88 @@
+package com.training.utils;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * PBKDF2-HMAC-SHA256 hasher. Encoded format is
+ * {@code $pbkdf2-sha256$<iterations>$<salt>$<hash>} with Base64 salt and hash.
+ */
+@Component
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+
+	private static final String ID = "pbkdf2";
+	private static final String PREFIX = "$pbkdf2-sha256$";
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+	private static final int SALT_LENGTH = 16;
+	private static final int KEY_LENGTH = 256;
+
+	private static final SecureRandom random = new SecureRandom();
+
+	private final int iterations;
+
+	public Pbkdf2PasswordHasher(@Value("${password.hash.pbkdf2.iterations:210000}") int iterations) {
+		this.iterations = iterations;
+	}
+
+	@Override
+	public String getId() {
+		return ID;
+	}
+
+	@Override
+	public String hash(String rawPassword) {
+		byte[] salt = new byte[SALT_LENGTH];
+		random.nextBytes(salt);
+		byte[] hash = derive(rawPassword, salt, this.iterations);
+		return PREFIX + this.iterations + "$" + Base64.getEncoder().encodeToString(salt) + "$"
+				+ Base64.getEncoder().encodeToString(hash);
+	}
+
+	@Override
+	public boolean matches(String rawPassword, String encodedPassword) {
+		String[] parts = split(encodedPassword);
+		if (parts == null) {
+			return false;
+		}
+		int storedIterations = Integer.parseInt(parts[0]);
+		byte[] salt = Base64.getDecoder().decode(parts[1]);
+		byte[] expected = Base64.getDecoder().decode(parts[2]);
+		return MessageDigest.isEqual(expected, derive(rawPassword, salt, storedIterations));
+	}
+
+	@Override
+	public boolean supports(String encodedPassword) {
+		return encodedPassword != null && encodedPassword.startsWith(PREFIX);
+	}
+
+	@Override
+	public boolean needsRehash(String encodedPassword) {
+		String[] parts = split(encodedPassword);
+		return parts == null || Integer.parseInt(parts[0]) != this.iterations;
+	}
+
+	private String[] split(String encodedPassword) {
+		if (!supports(encodedPassword)) {
+			return null;
+		}
+		String[] parts = encodedPassword.substring(PREFIX.length()).split("\\$");
+		return parts.length == 3 ? parts : null;
+	}
+
+	private byte[] derive(String rawPassword, byte[] salt, int rounds) {
+		try {
+			KeySpec spec = new PBEKeySpec(rawPassword.toCharArray(), salt, rounds, KEY_LENGTH);
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+		} catch (Exception e) {
+			throw new RuntimeException("Error hashing password: " + e.getMessage(), e);
+		}
+	}
+}
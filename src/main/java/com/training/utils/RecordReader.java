@@ -0,0 +1,142 @@
+package com.training.utils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads an import stream one record at a time, as CSV with a header row or as
+ * newline-delimited JSON. Only the current line is held in memory. CSV fields
+ * may be quoted (with "" as an escaped quote) but cannot span lines.
+ */
+public class RecordReader implements Closeable {
+
+	public static final String CSV = "csv";
+
+	public static final String NDJSON = "ndjson";
+
+	private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {
+	};
+
+	private final BufferedReader reader;
+
+	private final boolean csv;
+
+	private final ObjectMapper objectMapper;
+
+	private String[] header;
+
+	private int row;
+
+	public RecordReader(InputStream inputStream, String format, ObjectMapper objectMapper) {
+		this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), 64 * 1024);
+		this.csv = CSV.equalsIgnoreCase(format);
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Returns the next record, or null at the end of the stream. Blank lines are
+	 * skipped. A malformed line throws {@link IllegalArgumentException}; the
+	 * reader stays usable, so the caller can report it and continue.
+	 */
+	public Map<String, Object> next() throws IOException {
+		String line;
+		do {
+			line = this.reader.readLine();
+			if (line == null) {
+				return null;
+			}
+		} while (line.trim().isEmpty());
+
+		if (this.csv && this.header == null) {
+			List<String> columns = parseCsvLine(line);
+			this.header = columns.stream().map(String::trim).toArray(String[]::new);
+			return this.next();
+		}
+
+		this.row++;
+		if (!this.csv) {
+			Map<String, Object> record;
+			try {
+				record = this.objectMapper.readValue(line, MAP_TYPE);
+			} catch (JsonProcessingException e) {
+				throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+			}
+			// A literal null line must not read as the end of the stream
+			if (record == null) {
+				throw new IllegalArgumentException("Expected a JSON object");
+			}
+			return record;
+		}
+
+		List<String> values = parseCsvLine(line);
+		if (values.size() > this.header.length) {
+			throw new IllegalArgumentException(
+					"Expected " + this.header.length + " columns but found " + values.size());
+		}
+		Map<String, Object> record = new LinkedHashMap<>(this.header.length * 2);
+		for (int i = 0; i < values.size(); i++) {
+			if (!values.get(i).isEmpty()) {
+				record.put(this.header[i], values.get(i));
+			}
+		}
+		return record;
+	}
+
+	/**
+	 * 1-based number of the record last returned, not counting the CSV header
+	 * or blank lines.
+	 */
+	public int getRow() {
+		return this.row;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.reader.close();
+	}
+
+	private static List<String> parseCsvLine(String line) {
+		List<String> values = new ArrayList<>();
+		StringBuilder value = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"') {
+					if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+						value.append('"');
+						i++;
+					} else {
+						quoted = false;
+					}
+				} else {
+					value.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				values.add(value.toString());
+				value.setLength(0);
+			} else {
+				value.append(c);
+			}
+		}
+		if (quoted) {
+			throw new IllegalArgumentException("Unterminated quoted field");
+		}
+		values.add(value.toString());
+		return values;
+	}
+}
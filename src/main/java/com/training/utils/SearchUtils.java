@@ -0,0 +1,72 @@
+package com.training.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Helpers for the lowercase token index used by user search. Each searchable
+ * value is stored whole and split on separators so that a prefix of any word
+ * (first name, email local part, city...) can be matched with an anchored
+ * regex that uses the index.
+ */
+public final class SearchUtils {
+
+	private static final String SEPARATORS = "[\\s@._\\-,/+()]+";
+
+	private static final String REGEX_SPECIAL_CHARACTERS = "\\^$.|?*+()[]{}";
+
+	private SearchUtils() {
+	}
+
+	public static List<String> tokenize(String... values) {
+		Set<String> tokens = new LinkedHashSet<>();
+		for (String value : values) {
+			if (StringUtils.isBlank(value)) {
+				continue;
+			}
+			String normalized = normalize(value);
+			tokens.add(normalized);
+			for (String part : normalized.split(SEPARATORS)) {
+				if (!part.isEmpty()) {
+					tokens.add(part);
+				}
+			}
+		}
+		return new ArrayList<>(tokens);
+	}
+
+	public static List<String> terms(String searchInput) {
+		List<String> terms = new ArrayList<>();
+		for (String term : normalize(searchInput).split("\\s+")) {
+			if (!term.isEmpty()) {
+				terms.add(term);
+			}
+		}
+		return terms;
+	}
+
+	/**
+	 * Anchored, case-sensitive prefix pattern with all regex metacharacters
+	 * escaped, so raw user input is never compiled as a pattern.
+	 */
+	public static String prefixRegex(String term) {
+		StringBuilder regex = new StringBuilder(term.length() + 8).append('^');
+		for (int i = 0; i < term.length(); i++) {
+			char c = term.charAt(i);
+			if (REGEX_SPECIAL_CHARACTERS.indexOf(c) >= 0) {
+				regex.append('\\');
+			}
+			regex.append(c);
+		}
+		return regex.toString();
+	}
+
+	private static String normalize(String value) {
+		return value.trim().toLowerCase(Locale.ROOT);
+	}
+}
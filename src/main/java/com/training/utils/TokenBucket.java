@@ -0,0 +1,52 @@
+package com.training.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket rate limiter. Tokens refill continuously at
+ * {@code permitsPerSecond} up to {@code burst}. It never blocks, so callers
+ * on scheduler threads can stop early instead of sleeping.
+ */
+public class TokenBucket {
+
+	private final double permitsPerNano;
+
+	private final double burst;
+
+	private double tokens;
+
+	private long lastRefill;
+
+	public TokenBucket(double permitsPerSecond, int burst) {
+		if (permitsPerSecond <= 0 || burst < 1) {
+			throw new IllegalArgumentException("Rate and burst must be positive");
+		}
+		this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.burst = burst;
+		this.tokens = burst;
+		this.lastRefill = System.nanoTime();
+	}
+
+	public synchronized boolean tryAcquire() {
+		this.refill();
+		if (this.tokens >= 1) {
+			this.tokens -= 1;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Whole permits that {@link #tryAcquire()} would currently grant.
+	 */
+	public synchronized int availablePermits() {
+		this.refill();
+		return (int) this.tokens;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		this.tokens = Math.min(this.burst, this.tokens + (now - this.lastRefill) * this.permitsPerNano);
+		this.lastRefill = now;
+	}
+}
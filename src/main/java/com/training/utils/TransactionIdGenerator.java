@@ -0,0 +1,81 @@
+package com.training.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Snowflake-style 64-bit ids: 41 bits of milliseconds since 2024-01-01 UTC,
+ * 10 bits of node id and a 12-bit per-millisecond sequence. Ids are unique
+ * across nodes as long as every replica runs with a distinct {@code node.id}
+ * (0-1023), so startup fails when it is not set rather than guessing one.
+ * <p>
+ * The last timestamp and sequence are packed into one {@link AtomicLong} and
+ * advanced with compare-and-set, so generation is lock-free and allocates
+ * nothing. When a millisecond's sequence is exhausted, or the clock steps
+ * backwards, the generator carries on from the last issued value instead of
+ * waiting, which keeps ids strictly increasing per node.
+ */
+@Component
+public class TransactionIdGenerator {
+
+	private static final long EPOCH = 1704067200000L;
+
+	private static final int NODE_BITS = 10;
+
+	private static final int SEQUENCE_BITS = 12;
+
+	private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+	private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+	private static final Logger logger = LoggerFactory.getLogger(TransactionIdGenerator.class);
+
+	private final long nodeId;
+
+	// (timestamp << SEQUENCE_BITS) | sequence of the last id issued
+	private final AtomicLong state = new AtomicLong();
+
+	public TransactionIdGenerator(@Value("${node.id:-1}") long configuredNodeId) {
+		if (configuredNodeId < 0 || configuredNodeId > MAX_NODE_ID) {
+			throw new IllegalArgumentException(
+					"node.id must be set to a value between 0 and " + MAX_NODE_ID + " that is unique per replica");
+		}
+		this.nodeId = configuredNodeId;
+		logger.info("Transaction ids use node id {}", this.nodeId);
+	}
+
+	public long nextId() {
+		while (true) {
+			long last = this.state.get();
+			long lastTimestamp = last >>> SEQUENCE_BITS;
+			long now = System.currentTimeMillis() - EPOCH;
+
+			long next;
+			if (now > lastTimestamp) {
+				next = now << SEQUENCE_BITS;
+			} else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+				next = last + 1;
+			} else {
+				// Sequence exhausted: borrow the next millisecond
+				next = (lastTimestamp + 1) << SEQUENCE_BITS;
+			}
+
+			if (this.state.compareAndSet(last, next)) {
+				return ((next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | (this.nodeId << SEQUENCE_BITS)
+						| (next & SEQUENCE_MASK);
+			}
+		}
+	}
+
+	public String nextIdString() {
+		return Long.toString(this.nextId());
+	}
+
+	public long getNodeId() {
+		return this.nodeId;
+	}
+}
@@ -0,0 +1,101 @@
+package com.training.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class RecordReaderTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private RecordReader reader(String content, String format) {
+		return new RecordReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), format,
+				this.objectMapper);
+	}
+
+	@Test
+	void readsCsvRecordsAgainstTheHeader() throws IOException {
+		try (RecordReader reader = this.reader("email, firstName ,lastName\n\na@x.com,Ann,Lee\n", RecordReader.CSV)) {
+			Map<String, Object> record = reader.next();
+			assertEquals("a@x.com", record.get("email"));
+			assertEquals("Ann", record.get("firstName"));
+			assertEquals("Lee", record.get("lastName"));
+			assertEquals(1, reader.getRow());
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	void unquotesCsvFields() throws IOException {
+		String content = "name,description\n\"Java, Advanced\",\"The \"\"complete\"\" course\"\n";
+		try (RecordReader reader = this.reader(content, RecordReader.CSV)) {
+			Map<String, Object> record = reader.next();
+			assertEquals("Java, Advanced", record.get("name"));
+			assertEquals("The \"complete\" course", record.get("description"));
+		}
+	}
+
+	@Test
+	void omitsEmptyCsvValues() throws IOException {
+		try (RecordReader reader = this.reader("email,phone,city\na@x.com,,Pune\nb@x.com\n", RecordReader.CSV)) {
+			Map<String, Object> first = reader.next();
+			assertFalse(first.containsKey("phone"));
+			assertEquals("Pune", first.get("city"));
+			assertEquals(1, reader.next().size());
+		}
+	}
+
+	@Test
+	void rejectsMalformedCsvLinesAndCarriesOn() throws IOException {
+		String content = "email,phone\na@x.com,1,extra\n\"b@x.com,2\nc@x.com,3\n";
+		try (RecordReader reader = this.reader(content, RecordReader.CSV)) {
+			IllegalArgumentException tooMany = assertThrows(IllegalArgumentException.class, reader::next);
+			assertEquals("Expected 2 columns but found 3", tooMany.getMessage());
+			IllegalArgumentException unterminated = assertThrows(IllegalArgumentException.class, reader::next);
+			assertEquals("Unterminated quoted field", unterminated.getMessage());
+
+			Map<String, Object> record = reader.next();
+			assertEquals("c@x.com", record.get("email"));
+			assertEquals(3, reader.getRow());
+		}
+	}
+
+	@Test
+	void readsNdjsonRecords() throws IOException {
+		String content = "{\"email\":\"a@x.com\",\"credits\":5}\n   \n{\"email\":\"b@x.com\"}\n";
+		try (RecordReader reader = this.reader(content, RecordReader.NDJSON)) {
+			Map<String, Object> first = reader.next();
+			assertEquals("a@x.com", first.get("email"));
+			assertEquals(5, first.get("credits"));
+			assertEquals("b@x.com", reader.next().get("email"));
+			assertEquals(2, reader.getRow());
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	void rejectsMalformedJsonLinesAndCarriesOn() throws IOException {
+		String content = "{\"email\":\"a@x.com\"\n[1,2]\nnull\n{\"email\":\"b@x.com\"}\n";
+		try (RecordReader reader = this.reader(content, RecordReader.NDJSON)) {
+			IllegalArgumentException truncated = assertThrows(IllegalArgumentException.class, reader::next);
+			assertTrue(truncated.getMessage().startsWith("Malformed JSON: "));
+			assertThrows(IllegalArgumentException.class, reader::next);
+			assertThrows(IllegalArgumentException.class, reader::next);
+
+			assertEquals("b@x.com", reader.next().get("email"));
+			assertEquals(4, reader.getRow());
+			assertNull(reader.next());
+		}
+	}
+}
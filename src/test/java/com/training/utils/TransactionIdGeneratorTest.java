@@ -0,0 +1,82 @@
+package com.training.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class TransactionIdGeneratorTest {
+
+	private static final int THREADS = 8;
+
+	private static final int IDS_PER_THREAD = 50_000;
+
+	@Test
+	void rejectsMissingOrOutOfRangeNodeId() {
+		assertThrows(IllegalArgumentException.class, () -> new TransactionIdGenerator(-1));
+		assertThrows(IllegalArgumentException.class, () -> new TransactionIdGenerator(1024));
+	}
+
+	@Test
+	void embedsNodeId() {
+		TransactionIdGenerator generator = new TransactionIdGenerator(1023);
+		long id = generator.nextId();
+		assertEquals(1023, (id >>> 12) & 1023);
+		assertEquals(1023, generator.getNodeId());
+	}
+
+	@Test
+	void idsIncreaseStrictly() {
+		TransactionIdGenerator generator = new TransactionIdGenerator(7);
+		long previous = generator.nextId();
+		// Enough ids to exhaust the per-millisecond sequence several times over
+		for (int i = 0; i < 100_000; i++) {
+			long next = generator.nextId();
+			assertTrue(next > previous, "id " + next + " after " + previous);
+			previous = next;
+		}
+	}
+
+	@Test
+	void idsAreUniqueAndIncreasingPerThreadUnderContention() throws Exception {
+		TransactionIdGenerator generator = new TransactionIdGenerator(3);
+		Set<Long> ids = ConcurrentHashMap.newKeySet(THREADS * IDS_PER_THREAD);
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				results.add(executor.submit(() -> {
+					start.await();
+					long previous = -1;
+					boolean increasing = true;
+					for (int i = 0; i < IDS_PER_THREAD; i++) {
+						long id = generator.nextId();
+						increasing &= id > previous;
+						previous = id;
+						ids.add(id);
+					}
+					return increasing;
+				}));
+			}
+			start.countDown();
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get(30, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+	}
+}